@@ -25,9 +25,22 @@ package java.math;
  * @author      Josh Bloch（乔什·布洛赫）
  */
 public class BigDecimal extends Number {
-    private BigInteger intVal;
+    private volatile BigInteger intVal;
     private int	       scale = 0;
 
+    /*
+     * 非标度值在 (Long.MIN_VALUE, Long.MAX_VALUE] 中时直接保存在 intCompact 中，intVal 可以为 null，
+     * 需要时由 inflated() 创建（例如序列化时）。否则 intCompact 为 INFLATED，值只保存在 intVal 中。
+     * inflated() 可能在多个线程中同时为同一个 BigDecimal 写入 intVal，所以 intVal 是 volatile 的：
+     * 读到非 null 的 intVal 的线程也一定能看到这个 BigInteger 构造完成后的字段。
+     * 所以两个 BigDecimal 中只有一个的 intCompact 为 INFLATED 时，它们的非标度值一定不相等。
+     */
+    private transient long intCompact = INFLATED;
+    private static final long INFLATED = Long.MIN_VALUE;
+
+    /* 缓存的精度（非标度值的十进制位数），0 表示还没有计算 */
+    private transient int precision = 0;
+
     /* Appease the serialization gods（安抚众神） */
     private static final long serialVersionUID = 6108874887143696463L;
 
@@ -65,6 +78,7 @@ public class BigDecimal extends Number {
 		intVal = timesTenToThe(intPart, scale).add(fraction);
 	    }
 	}
+	intCompact = compactValFor(intVal);
     }
 
     /**
@@ -90,7 +104,7 @@ public class BigDecimal extends Number {
 	 * 特殊情况为零以抑制非终止归一化和虚假比例计算。
 	 */
 	if (mantissa == 0) {
-	    intVal = BigInteger.valueOf(0);
+	    intCompact = 0;
 	    return;
 	}
 
@@ -108,6 +122,7 @@ public class BigDecimal extends Number {
 	} else if (exponent > 0) {
 	    intVal = intVal.multiply(BigInteger.valueOf(2).pow(exponent));
 	}
+	intCompact = compactValFor(intVal);
     }
 
     /**
@@ -115,6 +130,7 @@ public class BigDecimal extends Number {
      */
     public BigDecimal(BigInteger val) {
 	intVal = val;
+	intCompact = compactValFor(val);
     }
 
     /**
@@ -126,6 +142,16 @@ public class BigDecimal extends Number {
 	    throw new NumberFormatException("Negative scale");
 
 	intVal = val;
+	intCompact = compactValFor(val);
+	this.scale = scale;
+    }
+
+    /*
+     * 内部使用的构造函数，不做检查。intCompact 不为 INFLATED 时 intVal 可以为 null，否则 intVal 必须是非标度值。
+     */
+    private BigDecimal(BigInteger intVal, long intCompact, int scale) {
+	this.intVal = intVal;
+	this.intCompact = intCompact;
 	this.scale = scale;
     }
 
@@ -139,7 +165,11 @@ public class BigDecimal extends Number {
      */
     public static BigDecimal valueOf(long val, int scale)
 	    throws NumberFormatException {
-	return new BigDecimal(BigInteger.valueOf(val), scale);
+	if (scale < 0)
+	    throw new NumberFormatException("Negative scale");
+	if (val == INFLATED)
+	    return new BigDecimal(BigInteger.valueOf(val), val, scale);
+	return new BigDecimal(null, val, scale);
     }
 
     /**
@@ -157,28 +187,87 @@ public class BigDecimal extends Number {
      * 返回一个 BigDecimal，其值为 (this + val)，其比例为 MAX(this.scale(), val.scale)。
      */
     public BigDecimal add(BigDecimal val){
-	BigDecimal arg[] = new BigDecimal[2];
-	arg[0] = this;	arg[1] = val;
-	matchScale(arg);
-	return new BigDecimal(arg[0].intVal.add(arg[1].intVal), arg[0].scale);
+	if (intCompact != INFLATED && val.intCompact != INFLATED) {
+	    BigDecimal sum = add(intCompact, scale, val.intCompact, val.scale);
+	    if (sum != null)
+		return sum;
+	}
+
+	int sc = Math.max(scale, val.scale);
+	return new BigDecimal(upscaled(sc).add(val.upscaled(sc)), sc);
     }
 
     /**
      * 返回一个 BigDecimal，其值为 (this - val)，其比例为 MAX(this.scale(), val.scale)。
      */
     public BigDecimal subtract(BigDecimal val){
-	BigDecimal arg[] = new BigDecimal[2];
-	arg[0] = this;	arg[1] = val;
-	matchScale(arg);
-	return new BigDecimal(arg[0].intVal.subtract(arg[1].intVal),
-			      arg[0].scale);
+	if (intCompact != INFLATED && val.intCompact != INFLATED) {
+	    BigDecimal difference = add(intCompact, scale,
+					-val.intCompact, val.scale);
+	    if (difference != null)
+		return difference;
+	}
+
+	int sc = Math.max(scale, val.scale);
+	return new BigDecimal(upscaled(sc).subtract(val.upscaled(sc)), sc);
+    }
+
+    /**
+     * 返回 (x/10**xscale + y/10**yscale)，其比例为 MAX(xscale, yscale)。
+     * 如果对齐比例或求和时溢出 long，则返回 null。x 和 y 都不能是 INFLATED。
+     */
+    private static BigDecimal add(long x, int xscale, long y, int yscale) {
+	if (xscale < yscale) {
+	    x = longMultiplyPowerTen(x, yscale - xscale);
+	    xscale = yscale;
+	} else if (yscale < xscale) {
+	    y = longMultiplyPowerTen(y, xscale - yscale);
+	}
+	if (x == INFLATED || y == INFLATED)
+	    return null;
+
+	long sum = x + y;
+	if (((x ^ sum) & (y ^ sum)) < 0)
+	    return null;
+	return valueOf(sum, xscale);
+    }
+
+    /**
+     * 返回一个 BigDecimal，其值为 (this + val) 按 mc 舍入后的值。
+     * 如果 mc 的舍入模式为 ROUND_UNNECESSARY 并且需要舍入，则引发 ArithmeticException。
+     */
+    public BigDecimal add(BigDecimal val, MathContext mc){
+	return add(val).round(mc);
+    }
+
+    /**
+     * 返回一个 BigDecimal，其值为 (this - val) 按 mc 舍入后的值。
+     * 如果 mc 的舍入模式为 ROUND_UNNECESSARY 并且需要舍入，则引发 ArithmeticException。
+     */
+    public BigDecimal subtract(BigDecimal val, MathContext mc){
+	return subtract(val).round(mc);
     }
 
     /**
      * 返回一个 BigDecimal，其值为 (this * val)，其比例为 this.scale() + val.scale。
      */
     public BigDecimal multiply(BigDecimal val){
-	return new BigDecimal(intVal.multiply(val.intVal), scale+val.scale);
+	if (intCompact != INFLATED && val.intCompact != INFLATED) {
+	    long product = multiplyExact(intCompact, val.intCompact);
+	    if (product != INFLATED)
+		return valueOf(product, scale+val.scale);
+	}
+	return new BigDecimal(inflated().multiply(val.inflated()),
+			      scale+val.scale);
+    }
+
+    /**
+     * 返回一个 BigDecimal，其值为 (this * val) 按 mc 舍入后的值。与 multiply(BigDecimal) 不同，
+     * 结果的位数不超过 mc 的精度，所以连乘时操作数不会越来越长。
+     * 如果 mc 的舍入模式为 ROUND_UNNECESSARY 并且需要舍入，则引发 ArithmeticException。
+     */
+    public BigDecimal multiply(BigDecimal val, MathContext mc){
+	return multiply(val).round(mc);
     }
 
     /**
@@ -207,8 +296,49 @@ public class BigDecimal extends Number {
 	    divisor = val.setScale(this.scale - scale);
 	}
 
+	/* 两个非标度值都是 long 时用 long 做除法 */
+	if (dividend.intCompact != INFLATED && divisor.intCompact != INFLATED)
+	    return divideAndRound(dividend.intCompact, divisor.intCompact,
+				  scale, roundingMode);
+	return divideAndRound(dividend.inflated(), divisor.inflated(), scale,
+			      roundingMode);
+    }
+
+    /**
+     * 返回一个比例为 scale 的 BigDecimal，其非标度值为 x / divisor 按指定舍入模式舍入后的整数。
+     * 如果 divisor == 0，或者舍入模式为 ROUND_UNNECESSARY 并且不能整除，则引发 ArithmeticException。
+     */
+    private static BigDecimal divideAndRound(long x, long divisor, int scale,
+					     int roundingMode) {
+	if (divisor == 0)
+	    throw new ArithmeticException("BigInteger divide by zero");
+
+	/* 如果准确，则返回结果 */
+	long q = x / divisor, r = x % divisor;
+	if (r == 0)
+	    return valueOf(q, scale);
+	else if (roundingMode == ROUND_UNNECESSARY) /* Rounding prohibited（禁止四舍五入） */
+	    throw new ArithmeticException("Rounding necessary");
+
+	/* 用 |r| 与 |divisor| - |r| 比较代替 2|r| 与 |divisor| 比较，以免溢出 */
+	int signum = ((x ^ divisor) < 0 ? -1 : 1);
+	int cmpFracHalf = 0;
+	if (roundingMode >= ROUND_HALF_UP) {
+	    long absR = Math.abs(r), rest = Math.abs(divisor) - absR;
+	    cmpFracHalf = (absR < rest ? -1 : (absR > rest ? 1 : 0));
+	}
+	if (needIncrement(roundingMode, signum, cmpFracHalf, (q & 1) != 0))
+	    q += signum;
+	return valueOf(q, scale);
+    }
+
+    /**
+     * 与 divideAndRound(long, long, int, int) 相同，但操作数是 BigInteger。
+     */
+    private static BigDecimal divideAndRound(BigInteger x, BigInteger divisor,
+					     int scale, int roundingMode) {
 	/* 如果准确，则进行除法并返回结果 */
-	BigInteger i[] = dividend.intVal.divideAndRemainder(divisor.intVal);
+	BigInteger i[] = x.divideAndRemainder(divisor);
 	BigInteger q = i[0], r = i[1];
 	if (r.signum() == 0)
 	    return new BigDecimal(q, scale);
@@ -216,7 +346,21 @@ public class BigDecimal extends Number {
 	    throw new ArithmeticException("Rounding necessary");
 
 	/* 适当取整 */
-	int signum = dividend.signum() * divisor.signum(); /* Sign of result（结果的标志） */
+	int signum = x.signum() * divisor.signum(); /* Sign of result（结果的标志） */
+	int cmpFracHalf = 0;
+	if (roundingMode >= ROUND_HALF_UP)
+	    cmpFracHalf = r.abs().shiftLeft(1).compareTo(divisor.abs());
+	if (needIncrement(roundingMode, signum, cmpFracHalf, q.testBit(0)))
+	    q = q.add(BigInteger.valueOf(signum));
+	return new BigDecimal(q, scale);
+    }
+
+    /**
+     * 返回被截断的商是否要远离零进一。signum 是商的符号，cmpFracHalf 是被丢弃的分数与 1/2 的比较结果
+     * （只在“最近邻”舍入模式下使用），oddQuotient 表示被截断的商是否为奇数。舍入模式不能是 ROUND_UNNECESSARY。
+     */
+    private static boolean needIncrement(int roundingMode, int signum,
+					 int cmpFracHalf, boolean oddQuotient) {
 	boolean increment;
 	if (roundingMode == ROUND_UP) {		    /* Away from zero（远离零） */
 	    increment = true;
@@ -227,8 +371,6 @@ public class BigDecimal extends Number {
 	} else if (roundingMode == ROUND_FLOOR) {   /* Towards -infinity （趋于负无穷大）*/
 	    increment = (signum < 0);
 	} else { /* 基于最近邻确定的剩余模式 */
-	    int cmpFracHalf = r.abs().multiply(BigInteger.valueOf(2)).
-					 compareTo(divisor.intVal.abs());
 	    if (cmpFracHalf < 0) {	   /* 我们更接近更高的数字 */
 		increment = false;
 	    } else if (cmpFracHalf > 0) {  /* 我们更接近低位数 */
@@ -239,12 +381,10 @@ public class BigDecimal extends Number {
 		else if (roundingMode == ROUND_HALF_DOWN)
 		    increment = false;
 		else  /* roundingMode == ROUND_HALF_EVEN */
-		    increment = q.testBit(0);	/* true iff q is odd（当且仅当q为奇数） */
+		    increment = oddQuotient;	/* true iff q is odd（当且仅当q为奇数） */
 	    }
 	}
-	return (increment
-		? new BigDecimal(q.add(BigInteger.valueOf(signum)), scale)
-		: new BigDecimal(q, scale));
+	return increment;
     }
 
     /**
@@ -258,6 +398,129 @@ public class BigDecimal extends Number {
 	    return this.divide(val, scale, roundingMode);
     }
 
+    /**
+     * 返回一个 BigDecimal，其值为 (this / val) 按 mc 舍入后的值。不需要舍入时结果去掉多余的尾随零，
+     * 但比例不小于 MAX(this.scale() - val.scale(), 0)；需要舍入时结果保留 mc 的精度的全部位数。
+     * 如果 mc 的精度为 0，则结果是精确的商；商不能用有限的小数表示时引发 ArithmeticException。
+     * 如果 val == 0，或者 mc 的舍入模式为 ROUND_UNNECESSARY 并且需要舍入，也引发 ArithmeticException。
+     */
+    public BigDecimal divide(BigDecimal val, MathContext mc)
+	throws ArithmeticException {
+	if (val.signum() == 0)
+	    throw new ArithmeticException("BigInteger divide by zero");
+	int preferredScale = Math.max(scale - val.scale, 0);
+	if (signum() == 0)
+	    return valueOf(0, preferredScale);
+	int prec = mc.getPrecision();
+	if (prec == 0)
+	    return divideExact(val, preferredScale);
+
+	/*
+	 * |this| >= 10**(this.precision()-this.scale-1)，|val| < 10**(val.precision()-val.scale)，
+	 * 所以商在比例 s 下至少有 e+s 位。取 s 使商至少有 prec+1 位。
+	 */
+	long e = ((long) precision() - scale) - ((long) val.precision() - val.scale);
+	long s = Math.max(prec + 1 - e, 0);
+	if (s > Integer.MAX_VALUE - 1)
+	    throw new ArithmeticException("Scale overflow");
+
+	/* 在比例 s 下截断求商 */
+	BigInteger x = inflated(), y = val.inflated();
+	long shift = s + val.scale - scale;
+	if (shift > 0)
+	    x = timesTenToThe(x, (int) shift);
+	else if (shift < 0)
+	    y = timesTenToThe(y, (int) -shift);
+	BigInteger qr[] = x.divideAndRemainder(y);
+
+	/*
+	 * 商精确时先去掉多余的尾随零再舍入。商不精确时在末尾补一位非零的粘滞位：补位后的值与真实的商落在
+	 * 同样的两个相邻的舍入候选之间，并且都不是中点，所以再舍去至少两位时的结果与直接对真实商舍入相同。
+	 */
+	BigDecimal q;
+	if (qr[1].signum() == 0)
+	    q = new BigDecimal(qr[0], (int) s).stripZerosToScale(preferredScale);
+	else
+	    q = new BigDecimal(qr[0].multiply(TEN).add(
+			BigInteger.valueOf(signum() * val.signum())), (int) s + 1);
+	return q.round(mc);
+    }
+
+    /**
+     * 返回精确的商 (this / val)，结果去掉多余的尾随零，但比例不小于 preferredScale。
+     * this 和 val 都不为零。商不能用有限的小数表示时引发 ArithmeticException。
+     */
+    private BigDecimal divideExact(BigDecimal val, int preferredScale) {
+	/* 约分后的分母只含因子 2 和 5 时商才是有限小数，需要的小数位数是两者个数中较大的一个 */
+	BigInteger x = inflated(), y = val.inflated().abs();
+	BigInteger d = y.divide(x.gcd(y));
+	int twos = d.getLowestSetBit();
+	d = d.shiftRight(twos);
+	int fives = 0;
+	BigInteger five = BigInteger.valueOf(5);
+	while (true) {
+	    BigInteger qr[] = d.divideAndRemainder(five);
+	    if (qr[1].signum() != 0)
+		break;
+	    d = qr[0];
+	    fives++;
+	}
+	if (!d.equals(BigInteger.valueOf(1)))
+	    throw new ArithmeticException("Non-terminating decimal expansion; "
+					  + "no exact representable decimal result");
+
+	long exactScale = (long) scale - val.scale + Math.max(twos, fives);
+	if (exactScale > Integer.MAX_VALUE)
+	    throw new ArithmeticException("Scale overflow");
+	return divide(val, (int) Math.max(exactScale, 0), ROUND_UNNECESSARY).
+	    stripZerosToScale(preferredScale);
+    }
+
+    /**
+     * 返回一个 BigDecimal，其值为 (this ** n)，其比例为 this.scale() * n。
+     * 如果 n < 0，或者结果的比例超出 int 的范围，则引发 ArithmeticException。
+     */
+    public BigDecimal pow(int n) throws ArithmeticException {
+	if (n < 0)
+	    throw new ArithmeticException("Negative exponent");
+	long newScale = (long) scale * n;
+	if (newScale > Integer.MAX_VALUE)
+	    throw new ArithmeticException("Scale overflow");
+	return new BigDecimal(inflated().pow(n), (int) newScale);
+    }
+
+    /**
+     * 返回一个 BigDecimal，其值约为 (this ** n)，按 mc 舍入。n 可以为负数，此时结果为 1 / (this ** -n)。
+     *
+     * 使用 ANSI X3.274-1996 的算法：按二进制从高位到低位平方并乘，每一步都按比 mc 多
+     * (n 的十进制位数 + 1) 位的工作精度舍入，最后按 mc 舍入。结果与精确值的误差不超过两个末位单位。
+     *
+     * 如果 mc 的精度为 0，则结果是精确的，等于 pow(n)，此时 n 不能为负数。
+     * 如果 |n| > 999999999，或者 mc 的舍入模式为 ROUND_UNNECESSARY 并且需要舍入，则引发 ArithmeticException。
+     */
+    public BigDecimal pow(int n, MathContext mc) throws ArithmeticException {
+	int prec = mc.getPrecision();
+	if (prec == 0)
+	    return pow(n);
+	if (n < -999999999 || n > 999999999)
+	    throw new ArithmeticException("Invalid operation");
+	if (n == 0)
+	    return valueOf(1);
+
+	int mag = Math.abs(n);
+	MathContext workMc = new MathContext(
+		prec + longDigitLength(mag) + 1, mc.getRoundingMode());
+	BigDecimal result = valueOf(1);
+	for (int bit=BigInteger.bitLen(mag)-1; bit>=0; bit--) {
+	    result = result.multiply(result, workMc);
+	    if (((mag >>> bit) & 1) != 0)
+		result = result.multiply(this, workMc);
+	}
+	if (n < 0)
+	    result = valueOf(1).divide(result, workMc);
+	return result.round(mc);
+    }
+
    /**
     * 返回一个 BigDecimal，其值为该数字的绝对值，其刻度为 this.scale()
     */
@@ -269,6 +532,8 @@ public class BigDecimal extends Number {
      * 返回一个 BigDecimal，其值为 -1 * this，其比例为 this.scale()
      */
     public BigDecimal negate(){
+	if (intCompact != INFLATED)
+	    return new BigDecimal(null, -intCompact, scale);
 	return new BigDecimal(intVal.negate(), scale);
     }
 
@@ -276,6 +541,8 @@ public class BigDecimal extends Number {
      * 返回此数字的符号函数（即，-1、0 或 1，因为此数字的值为负、零或正）。
      */
     public int signum(){
+	if (intCompact != INFLATED)
+	    return (intCompact > 0 ? 1 : (intCompact < 0 ? -1 : 0));
 	return intVal.signum();
     }
 
@@ -286,6 +553,22 @@ public class BigDecimal extends Number {
 	return scale;
     }
 
+    /**
+     * 返回此 BigDecimal 的精度，即非标度值的十进制位数（0 的精度为 1）。
+     * 位数由非标度值的位长估计，再与一个十的幂比较一次进行修正，不转换成字符串。
+     */
+    public int precision(){
+	int p = precision;
+	if (p == 0) {
+	    if (intCompact != INFLATED)
+		p = longDigitLength(Math.abs(intCompact));
+	    else
+		p = bigDigitLength(intVal.abs());
+	    precision = p;
+	}
+	return p;
+    }
+
 
     // Rounding Modes(舍入模式)
 
@@ -356,10 +639,9 @@ public class BigDecimal extends Number {
 	if (scale == this.scale)
 	    return this;
 	else if (scale > this.scale)
-	    return new BigDecimal(timesTenToThe(intVal, scale-this.scale),
-				  scale);
+	    return multiplyPowerTen(scale - this.scale, scale);
 	else /* scale < this.scale */
-	    return divide(valueOf(1), scale, roundingMode);
+	    return divideByPowerTen(this.scale - scale, scale, roundingMode);
     }
 
     /**
@@ -376,6 +658,27 @@ public class BigDecimal extends Number {
 	return setScale(scale, ROUND_UNNECESSARY);
     }
 
+    /**
+     * 返回按 mc 舍入的 BigDecimal：如果此数字的精度（有效位数）超过 mc 的精度，则按 mc 的舍入模式舍去多余的低位。
+     * 比例不能为负，所以舍入的位置在小数点左边时，舍去的位以零代替，比例为 0（结果的值仍然是舍入后的值）。
+     * mc 的精度为 0 时返回 this。如果 mc 的舍入模式为 ROUND_UNNECESSARY 并且需要舍入，则引发 ArithmeticException。
+     */
+    public BigDecimal round(MathContext mc) throws ArithmeticException {
+	int prec = mc.getPrecision();
+	int drop = precision() - prec;
+	if (prec == 0 || drop <= 0)
+	    return this;
+
+	/* q 是以 10**(drop - scale) 为单位舍入后的值；进位可能使它变成 10**prec，此时再去掉一个零 */
+	BigDecimal q = divideByPowerTen(drop, 0, mc.getRoundingMode());
+	if (q.precision() > prec) {
+	    q = q.divideByPowerTen(1, 0, ROUND_UNNECESSARY);
+	    drop++;
+	}
+	return (drop <= scale ? new BigDecimal(q.intVal, q.intCompact, scale-drop)
+			      : q.multiplyPowerTen(drop - scale, 0));
+    }
+
 
     // Decimal Point Motion Operations（小数点运动运算）
 
@@ -385,7 +688,8 @@ public class BigDecimal extends Number {
 	 * （此调用返回的 BigDecimal 具有值 (this * 10**-n) 和 scale MAX(this.scale()+n, 0)。）
      */
     public BigDecimal movePointLeft(int n){
-	return (n>=0 ? new BigDecimal(intVal, scale+n) : movePointRight(-n));
+	return (n>=0 ? new BigDecimal(intVal, intCompact, scale+n)
+		     : movePointRight(-n));
     }
 
     /**
@@ -395,8 +699,8 @@ public class BigDecimal extends Number {
 	 * （此调用返回的 BigDecimal 具有值 (this * 10**n) 和 scale MAX(this.scale()-n, 0)。）
      */
     public BigDecimal movePointRight(int n){
-	return (scale >= n ? new BigDecimal(intVal, scale-n)
-		           : new BigDecimal(timesTenToThe(intVal, n-scale),0));
+	return (scale >= n ? new BigDecimal(intVal, intCompact, scale-n)
+			   : multiplyPowerTen(n-scale, 0));
     }
 
     // Comparison Operations（比较操作）
@@ -413,11 +717,35 @@ public class BigDecimal extends Number {
 	if (sigDiff != 0)
 	    return (sigDiff > 0 ? 1 : -1);
 
+	int sign = signum();
+	if (sign == 0)
+	    return 0;
+
+	/*
+	 * 两个都是 long 时在 long 中对齐比例后比较。对齐时溢出的一方的幅度一定比另一方（不需要对齐）大，
+	 * 结果由符号决定。
+	 */
+	if (intCompact != INFLATED && val.intCompact != INFLATED) {
+	    long x = intCompact, y = val.intCompact;
+	    if (scale < val.scale)
+		x = longMultiplyPowerTen(x, val.scale - scale);
+	    else if (val.scale < scale)
+		y = longMultiplyPowerTen(y, scale - val.scale);
+	    if (x == INFLATED)
+		return sign;
+	    if (y == INFLATED)
+		return -sign;
+	    return (x < y ? -1 : (x > y ? 1 : 0));
+	}
+
+	/* 位数足以决定幅度大小时不重新缩放 */
+	int cmp = compareMagnitudeBounds(val);
+	if (cmp != 0)
+	    return cmp * sign;
+
 	/* 如果符号匹配，缩放并比较 intVals */
-	BigDecimal arg[] = new BigDecimal[2];
-	arg[0] = this;	arg[1] = val;
-	matchScale(arg);
-	return arg[0].intVal.compareTo(arg[1].intVal);
+	int sc = Math.max(scale, val.scale);
+	return upscaled(sc).compareTo(val.upscaled(sc));
     }
 
     /**
@@ -430,7 +758,11 @@ public class BigDecimal extends Number {
 	    return false;
 	BigDecimal xDec = (BigDecimal) x;
 
-	return scale == xDec.scale && intVal.equals(xDec.intVal);
+	if (scale != xDec.scale)
+	    return false;
+	if (intCompact != INFLATED || xDec.intCompact != INFLATED)
+	    return intCompact == xDec.intCompact;
+	return intVal.equals(xDec.intVal);
     }
 
     /**
@@ -454,7 +786,7 @@ public class BigDecimal extends Number {
      * 计算此对象的哈希码。请注意，数值相等但比例不同的两个 BigDecimal（例如，2.0、2.00）通常不会具有相同的哈希码。
      */
     public int hashCode(){
-	return 37*intVal.hashCode() + scale;
+	return 37*inflated().hashCode() + scale;
     }
 
     // Format Converters（格式转换器）
@@ -465,11 +797,14 @@ public class BigDecimal extends Number {
      */
     public String toString(){
 	if (scale == 0)	/* No decimal point（没有小数点） */
-	    return intVal.toString();
+	    return (intCompact != INFLATED ? Long.toString(intCompact)
+					   : intVal.toString());
 
 	/* Insert decimal point （插入小数点）*/
 	StringBuffer buf;
-	String intString = intVal.abs().toString();
+	String intString = (intCompact != INFLATED
+			    ? Long.toString(Math.abs(intCompact))
+			    : intVal.abs().toString());
 	int signum = signum();
 	int insertionPoint = intString.length() - scale;
 	if (insertionPoint == 0) {  /* Point goes right before intVal（点在 intVal 之前） */
@@ -493,14 +828,19 @@ public class BigDecimal extends Number {
      * 将此数字转换为 BigInteger。根据 Java 语言规范的标准缩小原语转换。特别要注意，此数字的任何小数部分都将被截断。
      */
     public BigInteger toBigInteger(){
-	return (scale==0 ? intVal
-			 : intVal.divide(BigInteger.valueOf(10).pow(scale)));
+	if (scale == 0)
+	    return inflated();
+	if (intCompact != INFLATED)
+	    return BigInteger.valueOf(longValue());
+	return intVal.divide(bigTenToThe(scale));
     }
 
     /**
      * 将此数字转换为 int。根据 Java 语言规范的标准缩小原语转换。特别要注意，此数字的任何小数部分都将被截断。
      */
     public int intValue(){
+	if (intCompact != INFLATED)
+	    return (int) longValue();
 	return toBigInteger().intValue();
     }
 
@@ -508,6 +848,10 @@ public class BigDecimal extends Number {
      * 将此数字转换为长整数。根据 Java 语言规范的标准缩小原语转换。特别要注意，此数字的任何小数部分都将被截断。
      */
     public long longValue(){
+	/* |intCompact| < 10**19，比例不小于 19 时整数部分为零 */
+	if (intCompact != INFLATED)
+	    return (scale < LONG_TEN_POWERS_TABLE.length
+		    ? intCompact / LONG_TEN_POWERS_TABLE[scale] : 0);
 	return toBigInteger().longValue();
     }
 
@@ -516,8 +860,17 @@ public class BigDecimal extends Number {
 	 * 类似于 Java 语言规范中定义的双浮点数缩小原语转换：如果数字的幅度太大而无法表示为浮点数，它将酌情转换为无穷大或负无穷大。
      */
     public float floatValue(){
-	/* Somewhat inefficient, but guaranteed to work. （有点低效，但保证可以工作。）*/
-	return Float.valueOf(this.toString()).floatValue();
+	if (scale == 0)
+	    return (intCompact != INFLATED ? (float) intCompact
+					   : intVal.floatValue());
+
+	/* 非标度值和 10**scale 都能精确表示为 float 时，一次正确舍入的除法就是结果 */
+	if (intCompact != INFLATED && Math.abs(intCompact) < (1L << 24)
+	    && scale < FLOAT_10_POW.length)
+	    return (float) intCompact / FLOAT_10_POW[scale];
+
+	int bits = (int) binaryBits(24, -149, 0x7f800000L);
+	return Float.intBitsToFloat(signum() < 0 ? bits | 0x80000000 : bits);
     }
 
     /**
@@ -526,26 +879,332 @@ public class BigDecimal extends Number {
 	 * 如果数字的幅度太大而无法表示为 double，则将酌情将其转换为无穷大或负无穷大。
      */
     public double doubleValue(){
-	/* Somewhat inefficient, but guaranteed to work. （有点低效，但保证可以工作。） */
-	return Double.valueOf(this.toString()).doubleValue();
+	if (scale == 0)
+	    return (intCompact != INFLATED ? (double) intCompact
+					   : intVal.doubleValue());
+
+	/* 非标度值和 10**scale 都能精确表示为 double 时，一次正确舍入的除法就是结果 */
+	if (intCompact != INFLATED && Math.abs(intCompact) < (1L << 53)
+	    && scale < DOUBLE_10_POW.length)
+	    return (double) intCompact / DOUBLE_10_POW[scale];
+
+	long bits = binaryBits(53, -1074, 0x7ff0000000000000L);
+	return Double.longBitsToDouble(signum() < 0 ? bits | 0x8000000000000000L
+						  : bits);
+    }
+
+    /* 能精确表示为 double 和 float 的十的幂 */
+    private static final double DOUBLE_10_POW[] = {
+	1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+	1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final float FLOAT_10_POW[] = {
+	1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    /**
+     * 返回 |this| 按 IEEE 754 二进制格式舍入（舍入到最近，平局取偶）后的位表示，不含符号位。
+     * significandBits 是有效数字的位数（含隐含的最高位），minUlpExp 是最小的次正规数的指数
+     * （double 为 53 和 -1074，float 为 24 和 -149），infBits 是无穷大的位表示。
+     */
+    private long binaryBits(int significandBits, int minUlpExp, long infBits) {
+	if (signum() == 0)
+	    return 0;
+
+	/* |this| = num / den 在 [2**(bn-bd-1), 2**(bn-bd)) 中，先排除一定溢出和一定舍入为零的情况 */
+	BigInteger num = inflated().abs(), den = bigTenToThe(scale);
+	long bn = num.bitLength(), bd = den.bitLength();
+	int maxExp = -minUlpExp - significandBits + 2;
+	if (bn - bd - 1 > maxExp)
+	    return infBits;
+	if (bn - bd < minUlpExp - 1)
+	    return 0;
+
+	/*
+	 * q = floor(|this| * 2**k) 取 significandBits+2 或 +3 位，并且 q 的单位不小于 2**(minUlpExp-2)，
+	 * 所以舍入时总要舍去 2 或 3 位：最高的一位是舍入位，其余的位和除法的余数是粘滞位。
+	 */
+	int k = (int) Math.min(significandBits + 2 - (bn - bd), 2 - minUlpExp);
+	BigInteger qr[];
+	boolean sticky = false;
+	if (k >= 0) {
+	    qr = num.shiftLeft(k).divideAndRemainder(den);
+	} else {
+	    sticky = (num.getLowestSetBit() < -k);
+	    qr = num.shiftRight(-k).divideAndRemainder(den);
+	}
+	sticky |= (qr[1].signum() != 0);
+	long q = qr[0].longValue();
+
+	/* 结果的末位的指数：正规数保留 significandBits 位，次正规数的末位固定为 2**minUlpExp */
+	long ulpExp = Math.max(longBitLength(q) - 1 - k - (significandBits - 1),
+			       minUlpExp);
+	int drop = (int) (ulpExp + k);
+	long m = q >>> drop;
+	boolean round = ((q >>> (drop - 1)) & 1) != 0;
+	sticky |= (q & ((1L << (drop - 1)) - 1)) != 0;
+	if (round && (sticky || (m & 1) != 0))
+	    m++;
+
+	/*
+	 * 正规数的 m 在 [2**(significandBits-1), 2**significandBits] 中，最高位加到指数字段上，
+	 * 所以进位到下一个二的幂和次正规数进位到最小的正规数都不需要特殊处理。
+	 */
+	long bits = ((ulpExp - minUlpExp) << (significandBits - 1)) + m;
+	return (bits < 0 || bits > infBits ? infBits : bits);
     }
 
 
     // Private "Helper" Methods（私有“助手”方法）
 
+    /**
+     * 返回非标度值的 BigInteger。值保存在 intCompact 中时在第一次需要时创建并缓存。
+     * 并发时可能创建多个相等的 BigInteger，哪一个留在缓存中都可以。
+     */
+    private BigInteger inflated() {
+	BigInteger b = intVal;
+	if (b == null)
+	    intVal = b = BigInteger.valueOf(intCompact);
+	return b;
+    }
+
+    /**
+     * 返回 b 的 long 值，如果 b 不在 (Long.MIN_VALUE, Long.MAX_VALUE] 中，则返回 INFLATED。
+     */
+    private static long compactValFor(BigInteger b) {
+	return (b.bitLength() <= 63 ? b.longValue() : INFLATED);
+    }
+
+    /**
+     * 返回 x * y，假设 x 和 y 都不是 Long.MIN_VALUE。如果乘积溢出 long，则返回 INFLATED。
+     */
+    private static long multiplyExact(long x, long y) {
+	long product = x * y;
+	if (((Math.abs(x) | Math.abs(y)) >>> 31) != 0
+	    && y != 0 && product / y != x)
+	    return INFLATED;
+	return product;
+    }
+
     /* Returns (a * 10^b) */
     private static BigInteger timesTenToThe(BigInteger a, int b) {
-	return a.multiply(BigInteger.valueOf(10).pow(b));
+	return a.multiply(bigTenToThe(b));
     }
 
     /*
-     * 如果 val[0] 和 val[1] 的比例不同，则重新缩放（非破坏性地）较低比例的 BigDecimal 以使其匹配。
+     * long 能表示的十的幂 10**0 .. 10**18，以及 THRESHOLDS_TABLE[n] = Long.MAX_VALUE / 10**n：
+     * |val| <= THRESHOLDS_TABLE[n] 时 val * 10**n 不溢出。
+     */
+    private static final long LONG_TEN_POWERS_TABLE[] = {
+	1L,			/* 0 */
+	10L,			/* 1 */
+	100L,			/* 2 */
+	1000L,			/* 3 */
+	10000L,			/* 4 */
+	100000L,		/* 5 */
+	1000000L,		/* 6 */
+	10000000L,		/* 7 */
+	100000000L,		/* 8 */
+	1000000000L,		/* 9 */
+	10000000000L,		/* 10 */
+	100000000000L,		/* 11 */
+	1000000000000L,		/* 12 */
+	10000000000000L,	/* 13 */
+	100000000000000L,	/* 14 */
+	1000000000000000L,	/* 15 */
+	10000000000000000L,	/* 16 */
+	100000000000000000L,	/* 17 */
+	1000000000000000000L	/* 18 */
+    };
+    private static final long THRESHOLDS_TABLE[] =
+	new long[LONG_TEN_POWERS_TABLE.length];
+
+    /*
+     * BigInteger 十的幂 10**0 .. 10**(length-1)，开始时有 32 项，需要时按两倍增长，最多 BIG_TEN_POWERS_TABLE_MAX 项。
+     * 数组一旦发布就不再修改：增长时在同步方法中建立一个新数组并替换引用，所以读取不需要同步。
+     */
+    private static volatile BigInteger BIG_TEN_POWERS_TABLE[];
+    private static final int BIG_TEN_POWERS_TABLE_MAX = 512;
+    private static final BigInteger TEN = BigInteger.valueOf(10);
+
+    static {
+	for (int i=0; i<LONG_TEN_POWERS_TABLE.length; i++)
+	    THRESHOLDS_TABLE[i] = Long.MAX_VALUE / LONG_TEN_POWERS_TABLE[i];
+
+	BigInteger pows[] = new BigInteger[32];
+	pows[0] = BigInteger.valueOf(1);
+	for (int i=1; i<pows.length; i++)
+	    pows[i] = pows[i-1].multiply(TEN);
+	BIG_TEN_POWERS_TABLE = pows;
+    }
+
+    /* 返回 10**n，n >= 0 */
+    private static BigInteger bigTenToThe(int n) {
+	BigInteger pows[] = BIG_TEN_POWERS_TABLE;
+	if (n < pows.length)
+	    return pows[n];
+	if (n < BIG_TEN_POWERS_TABLE_MAX)
+	    return expandBigTenPowers(n);
+	return TEN.pow(n);
+    }
+
+    /* 把十的幂表增长到至少 n+1 项（n < BIG_TEN_POWERS_TABLE_MAX），返回 10**n */
+    private static synchronized BigInteger expandBigTenPowers(int n) {
+	BigInteger pows[] = BIG_TEN_POWERS_TABLE;
+	if (n >= pows.length) {
+	    int newLength = pows.length;
+	    while (newLength <= n)
+		newLength <<= 1;
+	    newLength = Math.min(newLength, BIG_TEN_POWERS_TABLE_MAX);
+
+	    BigInteger grown[] = new BigInteger[newLength];
+	    System.arraycopy(pows, 0, grown, 0, pows.length);
+	    for (int i=pows.length; i<newLength; i++)
+		grown[i] = grown[i-1].multiply(TEN);
+	    BIG_TEN_POWERS_TABLE = pows = grown;
+	}
+	return pows[n];
+    }
+
+    /**
+     * 返回 x 的十进制位数，x >= 0（0 的位数为 1）。r 是由位长估计的位数（log10(2) 约为 1233/4096），
+     * 真实位数是 r 或 r+1，与 10**r 比较一次即可确定。
+     */
+    private static int longDigitLength(long x) {
+	if (x < 10)
+	    return 1;
+	int r = ((longBitLength(x) + 1) * 1233) >>> 12;
+	return (r >= LONG_TEN_POWERS_TABLE.length
+		|| x < LONG_TEN_POWERS_TABLE[r] ? r : r + 1);
+    }
+
+    /**
+     * 与 longDigitLength 相同，但 b 是非负的 BigInteger。
+     */
+    private static int bigDigitLength(BigInteger b) {
+	if (b.signum() == 0)
+	    return 1;
+	int r = (int) (((b.bitLength() + 1L) * 646456993) >>> 31);
+	return (b.compareTo(bigTenToThe(r)) < 0 ? r : r + 1);
+    }
+
+    /**
+     * 返回 val * 10**n，n >= 0，val 不能是 INFLATED。如果结果溢出 long，则返回 INFLATED。
+     */
+    private static long longMultiplyPowerTen(long val, int n) {
+	if (val == 0 || n == 0)
+	    return val;
+	if (n < LONG_TEN_POWERS_TABLE.length
+	    && Math.abs(val) <= THRESHOLDS_TABLE[n])
+	    return val * LONG_TEN_POWERS_TABLE[n];
+	return INFLATED;
+    }
+
+    /**
+     * 返回比例为 newScale (>= this.scale) 时的非标度值，即 intVal * 10**(newScale - scale)。
      */
-    private static void matchScale(BigDecimal[] val) {
-	if (val[0].scale < val[1].scale)
-	    val[0] = val[0].setScale(val[1].scale);
-	else if (val[1].scale < val[0].scale)
-	    val[1] = val[1].setScale(val[0].scale);
+    private BigInteger upscaled(int newScale) {
+	if (newScale == scale)
+	    return inflated();
+	if (intCompact != INFLATED) {
+	    long val = longMultiplyPowerTen(intCompact, newScale - scale);
+	    if (val != INFLATED)
+		return BigInteger.valueOf(val);
+	}
+	return timesTenToThe(inflated(), newScale - scale);
+    }
+
+    /**
+     * 去掉非标度值的尾随零，但比例不小于 preferredScale。
+     */
+    private BigDecimal stripZerosToScale(int preferredScale) {
+	int sc = scale;
+	if (intCompact != INFLATED) {
+	    long val = intCompact;
+	    while (sc > preferredScale && val != 0 && val % 10 == 0) {
+		val /= 10;
+		sc--;
+	    }
+	    return (sc == scale ? this : valueOf(val, sc));
+	}
+
+	BigInteger val = intVal;
+	while (sc > preferredScale) {
+	    BigInteger qr[] = val.divideAndRemainder(TEN);
+	    if (qr[1].signum() != 0)
+		break;
+	    val = qr[0];
+	    sc--;
+	}
+	return (sc == scale ? this : new BigDecimal(val, sc));
+    }
+
+    /**
+     * 返回非标度值为 (intVal * 10**n)、比例为 newScale 的 BigDecimal，n >= 0。
+     */
+    private BigDecimal multiplyPowerTen(int n, int newScale) {
+	if (intCompact != INFLATED) {
+	    long val = longMultiplyPowerTen(intCompact, n);
+	    if (val != INFLATED)
+		return valueOf(val, newScale);
+	}
+	return new BigDecimal(timesTenToThe(inflated(), n), newScale);
+    }
+
+    /**
+     * 返回非标度值为 (intVal / 10**n) 按舍入模式舍入、比例为 newScale 的 BigDecimal，n > 0。
+     */
+    private BigDecimal divideByPowerTen(int n, int newScale, int roundingMode) {
+	if (intCompact != INFLATED && n < LONG_TEN_POWERS_TABLE.length)
+	    return divideAndRound(intCompact, LONG_TEN_POWERS_TABLE[n],
+				  newScale, roundingMode);
+	return divideAndRound(inflated(), bigTenToThe(n), newScale,
+			      roundingMode);
+    }
+
+    /**
+     * 不重新缩放地比较 |this| 和 |val|：返回 1 或 -1 表示哪一个较大，不能确定时返回 0。
+     *
+     * 比例较小的一方的非标度值要乘以 10**d（d 为比例之差）才能比较。10**d 的位长为 floor(d*log2(10)) + 1，
+     * 用 double 计算时最多差一位；负数的 bitLength() 也可能比幅度的位长少一位。
+     * 所以只在两边的位长相差超过这些误差时才作出判断。
+     */
+    private int compareMagnitudeBounds(BigDecimal val) {
+	int d = scale - val.scale;
+	if (d == 0)
+	    return 0;
+	long xBits = unscaledBitLength(), yBits = val.unscaledBitLength();
+	if (d > 0) {
+	    long tenBits = (long) (d * LOG2_10) + 1;
+	    if (xBits > yBits + tenBits + 2)
+		return 1;
+	    if (xBits + 1 < yBits + tenBits - 2)
+		return -1;
+	} else {
+	    long tenBits = (long) (-d * LOG2_10) + 1;
+	    if (yBits > xBits + tenBits + 2)
+		return -1;
+	    if (yBits + 1 < xBits + tenBits - 2)
+		return 1;
+	}
+	return 0;
+    }
+
+    private static final double LOG2_10 = 3.321928094887362;
+
+    /**
+     * 返回非标度值的幅度的位长；值只保存在 intVal 中并且为负时可能少一位。
+     */
+    private int unscaledBitLength() {
+	if (intCompact == INFLATED)
+	    return intVal.bitLength();
+	return longBitLength(Math.abs(intCompact));
+    }
+
+    /* 返回 x (>= 0) 的二进制位数 */
+    private static int longBitLength(long x) {
+	int hi = (int) (x >>> 32);
+	return (hi != 0 ? 32 + BigInteger.bitLen(hi) : BigInteger.bitLen((int) x));
     }
 
     /**
@@ -560,5 +1219,18 @@ public class BigDecimal extends Number {
         if (scale < 0)
 	    throw new java.io.StreamCorruptedException(
                                       "BigDecimal: Negative scale");
+	if (intVal == null)
+	    throw new java.io.StreamCorruptedException(
+				      "BigDecimal: Null intVal");
+	intCompact = compactValFor(intVal);
+    }
+
+    /**
+     * 把这个 BigDecimal 写入流中（即序列化它）。流中总是包含 intVal，与原来的格式相同。
+     */
+    private synchronized void writeObject(java.io.ObjectOutputStream s)
+	throws java.io.IOException {
+	inflated();
+	s.defaultWriteObject();
     }
 }
@@ -42,10 +42,17 @@ import java.util.Random;
 public class BigInteger extends Number {
 
     /*
-     * 该数字以“最小”符号幅度格式在内部存储（即，没有 BigInteger 在其幅度中具有前导零字节）。
+     * 该数字以“最小”符号幅度格式在内部存储（即，没有 BigInteger 在其幅度中具有前导零 int）。
+     * 幅度按 32 位 int 分组，以大端顺序存放（即 mag[0] 是最高有效 int）。
      * 零用符号 0 表示（和零长度幅度）。因此，每个值都有一个表示。
+     * mag 对包内可见，BigIntegerAccumulator 直接读取它而不复制；包内代码不得修改它。
      */
     private int signum;
+    transient int[] mag;
+
+    /*
+     * 幅度的大端字节形式。它只在序列化时使用，以保持与 JDK 1.1 流格式兼容（参见 writeObject）。
+     */
     private byte[] magnitude;
 
     /*
@@ -53,9 +60,15 @@ public class BigInteger extends Number {
      */
     private int bitCount =  -1;
     private int bitLength = -1;
-    private int firstNonzeroByteNum = -2;  /* 仅用于负数 */
+    private int firstNonzeroByteNum = -2;  /* 不再使用，仅为保持序列化格式而保留 */
     private int lowestSetBit = -2;
 
+    /*
+     * 缓存的散列码，0 表示还没有计算（散列码恰好为 0 的数每次重新计算）。
+     * 它是 transient 的，不改变序列化形式；反序列化后为 0，第一次需要时重新计算。
+     */
+    private transient int hashCode = 0;
+
     //Constructors
 
     /**
@@ -64,15 +77,28 @@ public class BigInteger extends Number {
 	 * 数组必须至少包含一个字节，否则将抛出 NumberFormatException
      */
     public BigInteger(byte[] val) throws NumberFormatException{
-	if (val.length == 0)
+	this(val, 0, val.length);
+    }
+
+    /**
+     * 将字节数组 val 中从 off 开始的 len 个字节（有符号整数的大端二进制补码表示）转换为 BigInteger。
+     * 字节直接组合成量级，不复制输入数组。len 必须至少为 1，否则将抛出 NumberFormatException；
+     * 如果子区间超出了数组，则抛出 IndexOutOfBoundsException。
+     */
+    public BigInteger(byte[] val, int off, int len)
+    throws NumberFormatException{
+	if (off < 0 || len < 0 || off > val.length - len)
+	    throw new IndexOutOfBoundsException();
+	if (len == 0)
 	    throw new NumberFormatException("Zero length BigInteger");
 
-	if (val[0] < 0) {
-	    magnitude = makePositive(val);
+	int a[] = toIntArray(val, off, len);
+	if (val[off] < 0) {
+	    mag = makePositive(a);
 	    signum = -1;
 	} else {
-	    magnitude = stripLeadingZeroBytes(val);
-	    signum = (magnitude.length == 0 ? 0 : 1);
+	    mag = a;
+	    signum = (mag.length == 0 ? 0 : 1);
 	}
     }
 
@@ -84,12 +110,12 @@ public class BigInteger extends Number {
      */
     public BigInteger(int signum, byte[] magnitude)
     throws NumberFormatException{
-	this.magnitude = stripLeadingZeroBytes(magnitude);
+	this.mag = stripLeadingZeroBytes(magnitude);
 
 	if (signum < -1 || signum > 1)
 	    throw(new NumberFormatException("Invalid signum value"));
 
-	if (this.magnitude.length==0) {
+	if (this.mag.length==0) {
 	    this.signum = 0;
 	} else {
 	    if (signum == 0)
@@ -105,6 +131,16 @@ public class BigInteger extends Number {
 	 * 包括在内，都将导致 NumberFormatException。
      */
     public BigInteger(String val, int radix) throws NumberFormatException {
+	this(val, radix, 1);
+    }
+
+    /**
+     * 与 BigInteger(String, int) 相同，但最多用 parallelism 个线程（包括调用线程）转换很长的字符串：
+     * 分治转换中高低两半互相独立，可以同时转换，合并时的乘法也按 multiply(BigInteger, int) 并行。
+     * parallelism <= 1 时只在调用线程中转换。
+     */
+    public BigInteger(String val, int radix, int parallelism)
+    throws NumberFormatException {
 	int cursor = 0, numDigits;
 
 	if (radix < Character.MIN_RADIX || radix > Character.MAX_RADIX)
@@ -126,29 +162,115 @@ public class BigInteger extends Number {
 	    cursor++;
 	if (cursor==val.length()) {
 	    signum = 0;
-	    magnitude = new byte[0];
+	    mag = new int[0];
 	    return;
 	} else {
 	    numDigits = val.length() - cursor;
 	}
 
-	/* 如有必要，处理第一个（可能很短）数字组 */
-	int firstGroupLen = numDigits % digitsPerLong[radix];
-	if (firstGroupLen == 0)
-	    firstGroupLen = digitsPerLong[radix];
-	String group = val.substring(cursor, cursor += firstGroupLen);
-	BigInteger tmp = valueOf(Long.parseLong(group, radix));
+	/* 直接在原字符串上按分治法转换数字，不截取子串 */
+	mag = parseMagnitude(val, cursor, val.length(), radix, parallelism).mag;
+    }
+
+    /**
+     * 返回 val 中 [from, to) 区间内数字所表示的非负数。
+     * 数字较少时逐组乘加到一个预先分配的 int 数组中；
+     * 数字较多时拆成高低两半分别转换，再以 high * radix**(2**k) + low 合并，
+     * 其中 radix**(2**k) 取自 radixConversionPower 的缓存，乘法可以用上 Karatsuba/Toom-Cook。
+     * 数字足够多并且 parallelism > 1 时，低半部分在另一个线程中转换。
+     */
+    private static BigInteger parseMagnitude(String val, int from, int to,
+					     int radix, int parallelism) {
+	int numDigits = to - from;
+	if (numDigits <= SCHOENHAGE_BASE_CONVERSION_THRESHOLD*digitsPerInt[radix])
+	    return new BigInteger(parseSmall(val, from, to, radix), 1);
+
+	/* 低半部分取不小于一半的 2 的幂个数字，以便复用幂缓存 */
+	int k = bitLen(numDigits - 1) - 1;
+	int lowDigits = 1 << k;
+	BigInteger high, low;
+	if (parallelism > 1
+	    && numDigits / digitsPerInt[radix] >= PARALLEL_THRESHOLD) {
+	    int share = parallelism / 2;
+	    ParseTask lowTask = new ParseTask(val, to - lowDigits, to, radix,
+					      share);
+	    lowTask.start();
+	    high = parseMagnitude(val, from, to - lowDigits, radix,
+				  parallelism - share);
+	    lowTask.finish();
+	    low = lowTask.result;
+	} else {
+	    high = parseMagnitude(val, from, to - lowDigits, radix, parallelism);
+	    low = parseMagnitude(val, to - lowDigits, to, radix, parallelism);
+	}
+	return high.multiply(radixConversionPower(radix, k), parallelism).add(low);
+    }
+
+    /**
+     * 在另一个线程中转换字符串的一段数字（参见 parseMagnitude）。
+     */
+    private static class ParseTask extends ForkedTask {
+	private String val;
+	private int from, to, radix, parallelism;
+	BigInteger result;
+
+	ParseTask(String val, int from, int to, int radix, int parallelism) {
+	    this.val = val;
+	    this.from = from;
+	    this.to = to;
+	    this.radix = radix;
+	    this.parallelism = parallelism;
+	}
+
+	void compute() {
+	    result = parseMagnitude(val, from, to, radix, parallelism);
+	}
+    }
 
-	/* 处理剩余的数字组 */
-	while (cursor < val.length()) {
-	    group = val.substring(cursor, cursor += digitsPerLong[radix]);
-	    long groupVal = Long.parseLong(group, radix);
-	    if (groupVal <0)
-		throw new NumberFormatException("Illegal digit");
-	    tmp = tmp.multiply(longRadix[radix]).add(valueOf(groupVal));
+    /**
+     * 将 val 中 [from, to) 区间内的数字转换为量级数组（已去除前导零）。
+     * 每次取 digitsPerInt[radix] 位数字组成一个 int，再原地乘加进结果数组，不产生中间对象。
+     */
+    private static int[] parseSmall(String val, int from, int to, int radix) {
+	int numDigits = to - from;
+
+	/* 按位数估计所需 int 个数的上限，多留一个 int 的余量 */
+	long numBits = (long) (numDigits * (Math.log(radix) / LOG_TWO)) + 1;
+	int result[] = new int[(int) (numBits >>> 5) + 2];
+
+	/* 第一个数字组可能较短 */
+	int groupLen = numDigits % digitsPerInt[radix];
+	if (groupLen == 0)
+	    groupLen = digitsPerInt[radix];
+	int cursor = from;
+	while (cursor < to) {
+	    int groupVal = 0;
+	    int groupRadix = 1;
+	    for (int end = cursor + groupLen; cursor < end; cursor++) {
+		int digit = Character.digit(val.charAt(cursor), radix);
+		if (digit < 0)
+		    throw new NumberFormatException("Illegal digit");
+		groupVal = groupVal*radix + digit;
+		groupRadix *= radix;
+	    }
+	    destructiveMulAdd(result, groupRadix, groupVal);
+	    groupLen = digitsPerInt[radix];
 	}
+	return trustedStripLeadingZeroInts(result);
+    }
 
-	magnitude = tmp.magnitude;
+    /**
+     * 原地计算 x = x * y + z，其中 y 和 z 都按无符号 int 处理。
+     * 调用者保证 x 足够长，不会溢出。
+     */
+    private static void destructiveMulAdd(int x[], int y, int z) {
+	long ylong = y & LONG_MASK;
+	long carry = z & LONG_MASK;
+	for (int i=x.length-1; i>=0; i--) {
+	    long product = (x[i] & LONG_MASK) * ylong + carry;
+	    x[i] = (int) product;
+	    carry = product >>> 32;
+	}
     }
 
     /**
@@ -192,33 +314,132 @@ public class BigInteger extends Number {
 	 * 如果 bitLength < 2，则引发 ArithmeticException。
      */
     public BigInteger(int bitLength, int certainty, Random rnd) {
+	this(bitLength, certainty, rnd, 1);
+    }
+
+    /**
+     * 与 BigInteger(int, int, Random) 相同，但最多用 parallelism 个线程（包括调用线程）
+     * 同时搜索互不相关的候选窗口，返回最先找到的素数。parallelism <= 1 或者 bitLength 小于
+     * PARALLEL_PRIME_BITS 时只在调用线程中搜索。rnd 只在调用线程中使用，其他线程不会访问它，
+     * 也不会对它加锁。如果 bitLength < 2，则引发 ArithmeticException。
+     */
+    public BigInteger(int bitLength, int certainty, Random rnd,
+		      int parallelism) {
 	if (bitLength < 2)
 	    throw new ArithmeticException("bitLength < 2");
 
 	BigInteger p;
-	do {
-	    /*
-	     * 选择一个长度正好合适的候选人。请注意，Plumb 的生成器不能正确处理 bitLength<=16。
-	     */
+	if (bitLength <= SIEVE_PRIME_BITS+1) {
+	    /* 候选数可能就是筛法用的小素数，直接逐个随机测试 */
 	    do {
+		/* 选择一个长度正好合适的（奇数）候选人 */
 		p = new BigInteger(bitLength-1, rnd).setBit(bitLength-1);
-		p = (bitLength <= 16
-		     ? (bitLength > 2 ? p.setBit(0) : p)
-		     : new BigInteger(plumbGeneratePrime(p.magnitude), 1));
-	    } while (p.bitLength() != bitLength);
-	} while (!p.isProbablePrime(certainty));
+		if (bitLength > 2)
+		    p = p.setBit(0);
+	    } while (!p.isProbablePrime(certainty));
+	} else {
+	    p = sievePrime(bitLength, certainty, rnd, parallelism);
+	}
 
 	signum = 1;
-	magnitude = p.magnitude;
+	mag = p.mag;
+    }
+
+    /**
+     * 返回一个 bitLength 位的可能是素数的数，bitLength > SIEVE_PRIME_BITS+1。
+     * 每一轮由调用线程用 rnd 为每个 PrimeSearcher 选取一个随机的奇数起点，
+     * 再由最多 parallelism 个 PrimeSearcher（其中一个在调用线程中运行）各自搜索自己的窗口；
+     * 第一个找到的结果被采用，其余的随即停止。所有窗口中都没有素数时开始新的一轮。
+     */
+    private static BigInteger sievePrime(int bitLength, int certainty,
+					 Random rnd, int parallelism) {
+	int numSearchers = (bitLength >= PARALLEL_PRIME_BITS
+			    ? Math.max(parallelism, 1) : 1);
+	/* 窗口长度随位数增长，使窗口中大概率至少有一个素数 */
+	int searchLen = (bitLength/20 + 1) * 64;
+	BigInteger found[] = new BigInteger[1];
+	PrimeSearcher searchers[] = new PrimeSearcher[numSearchers];
+	while (found[0] == null) {
+	    for (int k=0; k<numSearchers; k++) {
+		BigInteger start = new BigInteger(bitLength-1, rnd)
+				       .setBit(bitLength-1).setBit(0);
+		searchers[k] = new PrimeSearcher(start, bitLength, searchLen,
+						 certainty, found);
+	    }
+	    ForkedTask.runAll(searchers);
+	}
+	return found[0];
+    }
+
+    /*
+     * 生成素数时只有 bitLength 不小于 PARALLEL_PRIME_BITS 才使用多个线程；
+     * 更短的素数在一个线程中几微秒就能找到，创建线程的开销超过收益。
+     */
+    private final static int PARALLEL_PRIME_BITS = 256;
+
+    /**
+     * 素数搜索线程。用 sievePrimes 对从奇数起点 start 开始的窗口中的候选数
+     * start, start+2, ..., start+2*(searchLen-1) 做位数组筛法（置位表示合数），
+     * 只对筛后剩下的候选数做概率素性测试。
+     * 结果写入共享的 found[0]（对 found 加锁），任何一个线程找到后其他线程都会停止。
+     */
+    private static class PrimeSearcher extends ForkedTask {
+	private BigInteger start;
+	private int bitLength, searchLen, certainty;
+	private BigInteger found[];
+
+	PrimeSearcher(BigInteger start, int bitLength, int searchLen,
+		      int certainty, BigInteger found[]) {
+	    this.start = start;
+	    this.bitLength = bitLength;
+	    this.searchLen = searchLen;
+	    this.certainty = certainty;
+	    this.found = found;
+	}
+
+	void compute() {
+	    /* 标记能被小素数整除的候选数 */
+	    int sieve[] = new int[(searchLen+31)/32];
+	    for (int i=0; i<sievePrimes.length; i++) {
+		int p = sievePrimes[i];
+		/* start + 2*j == 0 (mod p) 的最小 j */
+		int x = (p - start.remainder(p)) % p;
+		for (int j=((x & 1) == 0 ? x : x+p)/2; j<searchLen; j+=p)
+		    sieve[j >>> 5] |= 1 << (j & 31);
+	    }
+
+	    for (int j=0; j<searchLen; j++) {
+		if ((sieve[j >>> 5] & (1 << (j & 31))) != 0)
+		    continue;
+		if (done())
+		    return;
+		BigInteger candidate = start.add(valueOf(2L*j));
+		if (candidate.bitLength() > bitLength)
+		    return;
+		if (candidate.primeToCertainty(certainty)) {
+		    synchronized (found) {
+			if (found[0] == null)
+			    found[0] = candidate;
+		    }
+		    return;
+		}
+	    }
+	}
+
+	private boolean done() {
+	    synchronized (found) {
+		return found[0] != null;
+	    }
+	}
     }
 
 
     /**
-     * 这个私有构造函数不同于它的公有构造函数，它的参数在两个方面被颠倒了：假设它的参数是正确的，并且它不复制幅度数组。
+     * 这个包内构造函数不同于它的公有构造函数，它的参数在两个方面被颠倒了：假设它的参数是正确的，并且它不复制幅度数组。
      */
-    private BigInteger(byte[] magnitude, int signum) {
+    BigInteger(int[] magnitude, int signum) {
 	this.signum = (magnitude.length==0 ? 0 : signum);
-	this.magnitude = magnitude;
+	this.mag = magnitude;
     }
 
 
@@ -236,14 +457,42 @@ public class BigInteger extends Number {
 	else if (val < 0 && val >= -MAX_CONSTANT)
 	    return negConst[(int) -val];
 
-	/* 将二进制补码转储到 valArray */
-	byte valArray[] = new byte[8];
-	for (int i=0; i<8; i++, val >>= 8)
-	    valArray[7-i] = (byte)val;
-	return new BigInteger(valArray);
+	/* 将绝对值拆成（至多）两个 int；-2**63 的绝对值按无符号数处理仍然正确 */
+	int signum = 1;
+	if (val < 0) {
+	    val = -val;
+	    signum = -1;
+	}
+	int highWord = (int) (val >>> 32);
+	int[] mag = (highWord == 0 ? new int[] {(int) val}
+				   : new int[] {highWord, (int) val});
+	return new BigInteger(mag, signum);
+    }
+
+    private final static BigInteger ZERO = new BigInteger(new int[0], 0);
+
+    /**
+     * 如果这个数的绝对值小于 2**63（即量级至多两个 int 并且最高位为零），则返回 true。
+     * 这样的数可以用 smallValue 取得它的 long 值，add、subtract、multiply 和 compareTo
+     * 对两个这样的数直接用 long 运算（检查溢出），只在溢出时才走多 int 的通用算法。
+     */
+    private boolean isSmall() {
+	return mag.length < 2 || (mag.length == 2 && mag[0] >= 0);
     }
 
-    private final static BigInteger ZERO = new BigInteger(new byte[0], 0);
+    /**
+     * 返回这个数的 long 值，假设 isSmall() 为 true。
+     */
+    private long smallValue() {
+	long magnitude;
+	if (mag.length == 0)
+	    magnitude = 0;
+	else if (mag.length == 1)
+	    magnitude = mag[0] & LONG_MASK;
+	else
+	    magnitude = ((long) mag[0] << 32) | (mag[1] & LONG_MASK);
+	return (signum < 0 ? -magnitude : magnitude);
+    }
 
     /**
      * 加载类时初始化静态常量数组
@@ -253,18 +502,21 @@ public class BigInteger extends Number {
     private static BigInteger negConst[] = new BigInteger[MAX_CONSTANT+1];
     static {
 	for (int i = 1; i <= MAX_CONSTANT; i++) {
-	    byte[] magnitude = new byte[1];
-	    magnitude[0] = (byte) i;
+	    int[] magnitude = new int[1];
+	    magnitude[0] = i;
 	    posConst[i] = new BigInteger(magnitude,  1);
 	    negConst[i] = new BigInteger(magnitude, -1);
 	}
     }
 
     /**
-     * 返回具有给定二进制补码表示的 BigInteger。假设输入数组不会被修改（如果可行，返回的 BigInteger 将引用输入数组）。
+     * 返回具有给定大端二进制补码 int 表示的 BigInteger。val 必须是调用者新分配、之后不再使用的数组：
+     * 如果可行，它会被就地转换并直接用作返回值的量级。
      */
-    private static BigInteger valueOf(byte val[]) {
-	return (val[0]>0 ? new BigInteger(val, 1) : new BigInteger(val));
+    private static BigInteger valueOf(int val[]) {
+	if (val.length > 0 && val[0] < 0)
+	    return new BigInteger(makePositive(val), -1);
+	return new BigInteger(trustedStripLeadingZeroInts(val), 1);
     }
 
 
@@ -278,31 +530,80 @@ public class BigInteger extends Number {
 	    return this;
 	else if (this.signum == 0)
 	    return val;
-	else if (val.signum == signum)
-	    return new BigInteger(plumbAdd(magnitude, val.magnitude), signum);
-	else if (this.signum < 0)
-	    return plumbSubtract(val.magnitude, magnitude);
-	else  /* val.signum < 0 */
-	    return plumbSubtract(magnitude, val.magnitude);
+
+	/* 两个数都在 long 范围内并且和不溢出时，直接用 long 运算 */
+	if (isSmall() && val.isSmall()) {
+	    long x = smallValue(), y = val.smallValue();
+	    long sum = x + y;
+	    if (((x ^ sum) & (y ^ sum)) >= 0)
+		return valueOf(sum);
+	}
+
+	if (val.signum == signum)
+	    return new BigInteger(add(mag, val.mag), signum);
+
+	/* 符号不同：从较大的幅度中减去较小的幅度，结果取较大者的符号 */
+	int cmp = intArrayCmp(mag, val.mag);
+	if (cmp == 0)
+	    return ZERO;
+	int[] resultMag = (cmp > 0 ? subtract(mag, val.mag)
+				   : subtract(val.mag, mag));
+	return new BigInteger(resultMag, cmp * signum);
     }
 
     /**
      * 返回值为 (this - val) 的 BigInteger。
      */
     public BigInteger subtract(BigInteger val) {
-	return add(new BigInteger(val.magnitude, -val.signum));
+	if (isSmall() && val.isSmall()) {
+	    long x = smallValue(), y = val.smallValue();
+	    long difference = x - y;
+	    if (((x ^ y) & (x ^ difference)) >= 0)
+		return valueOf(difference);
+	}
+	return add(new BigInteger(val.mag, -val.signum));
     }
 
     /**
      * 返回值为 (this * val) 的 BigInteger。
      */
     public BigInteger multiply(BigInteger val) {
+	return multiply(val, 1);
+    }
 
+    /**
+     * 返回值为 (this * val) 的 BigInteger，最多使用 parallelism 个线程（包括调用线程）。
+     * Toom-Cook 乘法中互相独立的五个子乘积、数论变换乘法中三个素数的卷积分别在不同的线程中计算；
+     * 操作数短于 PARALLEL_THRESHOLD 个 int 或者 parallelism <= 1 时与 multiply(val) 相同。
+     */
+    public BigInteger multiply(BigInteger val, int parallelism) {
 	if (val.signum == 0 || this.signum==0)
 	    return ZERO;
-	else
-	    return new BigInteger(plumbMultiply(magnitude, val.magnitude),
+	if (val == this)
+	    return square(parallelism);
+
+	/* 两个数都在 long 范围内时先试 long 乘法：两个量级都小于 2**31 时乘积一定不溢出，否则用除法检查 */
+	if (isSmall() && val.isSmall()) {
+	    long x = smallValue(), y = val.smallValue();
+	    long product = x * y;
+	    if ((mag.length == 1 && val.mag.length == 1
+		 && (mag[0] | val.mag[0]) >= 0) || product / y == x)
+		return valueOf(product);
+	}
+
+	/* 按操作数的大小（以 int 计）选择乘法算法 */
+	int xlen = mag.length, ylen = val.mag.length;
+	if (xlen < KARATSUBA_THRESHOLD || ylen < KARATSUBA_THRESHOLD)
+	    return new BigInteger(trustedStripLeadingZeroInts(
+		       multiplyToLen(mag, xlen, val.mag, ylen, null)),
 				  signum * val.signum);
+	else if (xlen < TOOM_COOK_THRESHOLD && ylen < TOOM_COOK_THRESHOLD)
+	    return multiplyKaratsuba(this, val);
+	else if (xlen < NTT_THRESHOLD || ylen < NTT_THRESHOLD
+		 || xlen + ylen > NTT_MAX_LENGTH)
+	    return multiplyToomCook3(this, val, parallelism);
+	else
+	    return multiplyNTT(this, val, parallelism);
     }
 
     /**
@@ -315,7 +616,7 @@ public class BigInteger extends Number {
 	else if (this.signum == 0)
 	    return ZERO;
 	else
-	    return new BigInteger(plumbDivide(magnitude, val.magnitude),
+	    return new BigInteger(divideMagnitude(mag, val.mag)[0],
 				  signum * val.signum);
     }
 
@@ -328,11 +629,10 @@ public class BigInteger extends Number {
 	    throw new ArithmeticException("BigInteger divide by zero");
 	else if (this.signum == 0)
 	    return ZERO;
-	else if (this.magnitude.length < val.magnitude.length)
-	    return this; /*** WORKAROUND FOR BUG IN R1.1 OF PLUMB'S PKG（PLUMB'S PKG R1.1 中的 BUG 解决方法） ***/
+	else if (this.mag.length < val.mag.length)
+	    return this; /* 快速路径：|this| < |val| */
 	else
-	    return new BigInteger(plumbRemainder(magnitude,val.magnitude),
-				  signum);
+	    return new BigInteger(divideMagnitude(mag, val.mag)[1], signum);
     }
 
     /**
@@ -347,13 +647,12 @@ public class BigInteger extends Number {
 	    throw new ArithmeticException("BigInteger divide by zero");
 	} else if (this.signum == 0) {
 	    result[0] = result[1] = ZERO;
-	} else if (this.magnitude.length < val.magnitude.length) {
-	    /*** WORKAROUND FOR A BUG IN R1.1 OF PLUMB'S PACKAGE（PLUMB 软件包 R1.1 中的一个错误的解决方法） ***/
+	} else if (this.mag.length < val.mag.length) {
+	    /* 快速路径：|this| < |val| */
 	    result[0] = ZERO;
 	    result[1] = this;
 	} else {
-	    byte resultMagnitude[][] =
-		plumbDivideAndRemainder(magnitude, val.magnitude);
+	    int resultMagnitude[][] = divideMagnitude(mag, val.mag);
 	    result[0] = new BigInteger(resultMagnitude[0], signum*val.signum);
 	    result[1] = new BigInteger(resultMagnitude[1], signum);
 	}
@@ -366,6 +665,15 @@ public class BigInteger extends Number {
 	 * 请注意，指数是整数而不是 BigInteger。
      */
     public BigInteger pow(int exponent) throws ArithmeticException {
+	return pow(exponent, 1);
+    }
+
+    /**
+     * 与 pow(int) 相同，但最多使用 parallelism 个线程（包括调用线程）：
+     * 每一步中互相独立的乘法和平方同时计算，大的乘法本身也按 multiply(BigInteger, int) 并行。
+     */
+    public BigInteger pow(int exponent, int parallelism)
+    throws ArithmeticException {
 	if (exponent < 0)
 	    throw new ArithmeticException("Negative exponent");
 	if (signum==0)
@@ -375,15 +683,135 @@ public class BigInteger extends Number {
 	BigInteger result = valueOf(exponent<0 && (exponent&1)==1 ? -1 : 1);
 	BigInteger baseToPow2 = this;
 	while (exponent != 0) {
-	    if ((exponent & 1)==1)
-		result = result.multiply(baseToPow2);
+	    if ((exponent & 1)==1) {
+		if (exponent != 1 && parallelism > 1
+		    && baseToPow2.mag.length >= PARALLEL_THRESHOLD) {
+		    /* 这一步的乘法和下一步要用的平方互相独立 */
+		    BigInteger v[] = multiplyAll(
+			new BigInteger[] {result, baseToPow2},
+			new BigInteger[] {baseToPow2, baseToPow2}, parallelism);
+		    result = v[0];
+		    baseToPow2 = v[1];
+		    exponent >>= 1;
+		    continue;
+		}
+		result = result.multiply(baseToPow2, parallelism);
+	    }
 	    if ((exponent >>= 1) != 0)
-		baseToPow2 = new BigInteger(
-				    plumbSquare(baseToPow2.magnitude), 1);
+		baseToPow2 = baseToPow2.square(parallelism);
 	}
 	return result;
     }
 
+    /**
+     * 返回 floor(sqrt(this))，即满足 s*s <= this 的最大整数 s。如果 this < 0，则抛出 ArithmeticException。
+     */
+    public BigInteger sqrt() throws ArithmeticException {
+	return sqrtAndRemainder()[0];
+    }
+
+    /**
+     * 返回一个包含两个 BigInteger 的数组：[0] 是 s = floor(sqrt(this))，[1] 是余数 this - s*s。
+     * 如果 this < 0，则抛出 ArithmeticException。
+     */
+    public BigInteger[] sqrtAndRemainder() throws ArithmeticException {
+	if (signum < 0)
+	    throw new ArithmeticException("Negative BigInteger");
+	return sqrtRemainder(this);
+    }
+
+    /**
+     * 返回 {floor(sqrt(x)), x - floor(sqrt(x))**2}，假设 x >= 0。
+     *
+     * 小于 2**62 的数用 double 的平方根估计再修正。更大的数每次把精度加倍：x 的高一半位
+     * x >> 2h 的平方根（递归求出）左移 h 位后是 sqrt(x) 的近似值，误差约为 2**h，即约一半的位正确；
+     * 一次牛顿迭代 s = (s + x/s) / 2 使正确的位数加倍，并且结果不小于 floor(sqrt(x))。
+     * 选取 h 使剩下的误差不超过一个单位，最后用余数的符号向下修正。
+     */
+    private static BigInteger[] sqrtRemainder(BigInteger x) {
+	int bits = x.bitLength();
+	if (bits <= 62) {
+	    long v = x.longValue();
+	    long s = (long) Math.sqrt((double) v);
+
+	    /* double 的舍入可能使估计值差一 */
+	    while (s*s > v)
+		s--;
+	    while ((s+1)*(s+1) <= v)
+		s++;
+	    return new BigInteger[] {valueOf(s), valueOf(v - s*s)};
+	}
+
+	int h = bits/4 - 1;
+	BigInteger s = sqrtRemainder(x.shiftRight(2*h))[0].shiftLeft(h);
+	s = s.add(x.divide(s)).shiftRight(1);
+
+	/* (s-1)**2 = s**2 - 2s + 1，所以 s 减一时余数增加 2s - 1 */
+	BigInteger r = x.subtract(s.square());
+	while (r.signum < 0) {
+	    r = r.add(s.shiftLeft(1)).subtract(ONE);
+	    s = s.subtract(ONE);
+	}
+	return new BigInteger[] {s, r};
+    }
+
+    /**
+     * 返回 this 的 n 次方根向零取整的值：this >= 0 时为满足 s**n <= this 的最大整数 s，
+     * this < 0 并且 n 为奇数时为 -(-this).root(n)。
+     * 如果 n <= 0，或者 this < 0 并且 n 为偶数，则抛出 ArithmeticException。
+     */
+    public BigInteger root(int n) throws ArithmeticException {
+	if (n <= 0)
+	    throw new ArithmeticException("Non-positive root degree");
+	if (signum < 0) {
+	    if ((n & 1) == 0)
+		throw new ArithmeticException("Even root of negative BigInteger");
+	    return rootFloor(negate(), n).negate();
+	}
+	if (n == 1 || signum == 0)
+	    return this;
+	if (n == 2)
+	    return sqrt();
+	return rootFloor(this, n);
+    }
+
+    /**
+     * 返回 floor(x**(1/n))，假设 x > 0 并且 n >= 2。
+     *
+     * 与 sqrtRemainder 一样按精度加倍：结果不超过 48 位时用 double 的对数估计初值，
+     * 否则初值是 x 的高位部分 x >> nh 的 n 次方根（递归求出）左移 h 位。然后做一次牛顿迭代
+     * s = ((n-1)s + x/s**(n-1)) / n，结果不小于真正的根，并且选取 h 使误差不超过一个单位；
+     * 最后检查 s**n > x 时向下修正。
+     */
+    private static BigInteger rootFloor(BigInteger x, int n) {
+	int bits = x.bitLength();
+	if (n >= bits)			/* 1 <= x < 2**n */
+	    return ONE;
+
+	int rootBits = (bits - 1)/n + 1;
+	BigInteger s;
+	if (rootBits <= 48) {
+	    /* log(x) 由最高的 62 位和移位量得到，不需要把整个 x 转换为 double */
+	    int shift = Math.max(bits - 62, 0);
+	    double logX = Math.log((double) x.shiftRight(shift).longValue())
+			  + shift * LOG_TWO;
+	    /*
+	     * 估计值的相对误差远小于 2**-40；稍微放大后再加一，保证初值在真正的根之上，
+	     * 否则对很大的 n，从下方偏离较多的初值会使牛顿迭代跳得很远。
+	     */
+	    s = valueOf((long) (Math.exp(logX / n) * (1 + 1e-12)) + 1);
+	} else {
+	    int h = (rootBits - bitLen(n) - 2) / 2;
+	    s = rootFloor(x.shiftRight(n*h), n).shiftLeft(h);
+	}
+
+	BigInteger n1 = valueOf(n - 1);
+	s = s.multiply(n1).add(x.divide(s.pow(n - 1))).divide(valueOf(n));
+	while (s.pow(n).compareTo(x) > 0)
+	    s = s.subtract(ONE);
+	return s;
+    }
+
     /**
      * 返回一个 BigInteger，其值为 abs(this) 和 abs(val) 的最大公分母。如果 this == 0 && val == 0，则返回 0。
      */
@@ -392,8 +820,183 @@ public class BigInteger extends Number {
 	    return this.abs();
 	else if (this.signum == 0)
 	    return val.abs();
-	else
-	    return new BigInteger(plumbGcd(magnitude, val.magnitude), 1);
+
+	/* 两个数都小于 2**63 时直接用二进制算法 */
+	if (isSmall() && val.isSmall())
+	    return valueOf(binaryGcd(Math.abs(smallValue()),
+				     Math.abs(val.smallValue())));
+
+	return new BigInteger(lehmerGcd(mag, val.mag, null), 1);
+    }
+
+    /**
+     * 返回 a 和 b 的最大公约数，假设 a >= 0 并且 b >= 0。使用二进制（Stein）算法：
+     * 提出公共的二的幂之后只做减法和移位，不做除法。
+     */
+    private static long binaryGcd(long a, long b) {
+	if (a == 0)
+	    return b;
+	if (b == 0)
+	    return a;
+
+	int aZeros = longTrailingZeroCnt(a);
+	int bZeros = longTrailingZeroCnt(b);
+	a >>>= aZeros;
+	b >>>= bZeros;
+	int t = Math.min(aZeros, bZeros);
+
+	while (a != b) {
+	    if (a > b) {
+		a -= b;
+		a >>>= longTrailingZeroCnt(a);
+	    } else {
+		b -= a;
+		b >>>= longTrailingZeroCnt(b);
+	    }
+	}
+	return a << t;
+    }
+
+    /* 返回 w 的二进制表示中的尾随零位数。假设 w != 0 */
+    private static int longTrailingZeroCnt(long w) {
+	return ((int) w != 0 ? trailingZeroCnt((int) w)
+			     : 32 + trailingZeroCnt((int) (w >>> 32)));
+    }
+
+    /**
+     * 用 Lehmer 算法（《计算机程序设计艺术》第 2 卷，4.5.2 节，算法 L）求量级 a 和 b 的最大公约数，
+     * 假设两者都不为零，并返回其量级。
+     *
+     * 每一轮只看 u 和 v 最高的 62 位，用 long 运算推出尽可能多的欧几里得商，把它们合成一个
+     * 系数小于 2**31 的 2x2 矩阵，再用一遍线性组合同时更新 u 和 v 的全部 int；
+     * 只有最高位推不出商时才做一次真正的除法。
+     *
+     * x 为 null 时只求最大公约数，值落入 long 之后改用二进制算法。x 不为 null 时是扩展算法：
+     * x[0]、x[1] 是分别使 u == x[0]*c、v == x[1]*c (mod M) 的系数（c 和 M 由调用者决定），
+     * 与 u、v 同步更新；返回时 x[0] 是最大公约数的系数。
+     */
+    private static int[] lehmerGcd(int[] a, int[] b, BigInteger x[]) {
+	/* 保证 u >= v */
+	if (intArrayCmp(a, b) < 0) {
+	    int[] t = a;
+	    a = b;
+	    b = t;
+	    if (x != null) {
+		BigInteger s = x[0];
+		x[0] = x[1];
+		x[1] = s;
+	    }
+	}
+
+	/*
+	 * u 和 v 在等长的数组中右对齐（前面补零），t 和 w 是线性组合的目标数组，每轮与 u、v 交换。
+	 * top 是 u 的第一个非零 int 的下标；clean 以下四个数组都是零。
+	 */
+	int len = a.length;
+	int[] u = toFixedLength(a, len), v = toFixedLength(b, len);
+	int[] t = new int[len], w = new int[len];
+	int top = 0, clean = 0;
+
+	while (true) {
+	    while (top < len && v[top] == 0 && u[top] == 0)
+		top++;
+	    int vtop = top;
+	    while (vtop < len && v[vtop] == 0)
+		vtop++;
+	    if (vtop == len)
+		break;			/* v == 0 */
+
+	    int n = 32*(len-1-top) + bitLen(u[top]);
+	    if (x == null && n <= 63) {
+		long g = binaryGcd(topBits(u, 0), topBits(v, 0));
+		return trustedStripLeadingZeroInts(
+			   new int[] {(int) (g >>> 32), (int) g});
+	    }
+
+	    /* 算法 L：从最高位推出商，直到两个界给出的商不同或者系数将要超过 2**31 */
+	    int shift = Math.max(n - 62, 0);
+	    long uh = topBits(u, shift), vh = topBits(v, shift);
+	    long A = 1, B = 0, C = 0, D = 1;
+	    while (vh + C > 0 && vh + D > 0) {
+		long q = (uh + A) / (vh + C);
+		if (q != (uh + B) / (vh + D) || q > Integer.MAX_VALUE)
+		    break;
+		long nc = A - q*C, nd = B - q*D;
+		if (Math.abs(nc) > Integer.MAX_VALUE
+		    || Math.abs(nd) > Integer.MAX_VALUE)
+		    break;
+		A = C;
+		C = nc;
+		B = D;
+		D = nd;
+		long nv = uh - q*vh;
+		uh = vh;
+		vh = nv;
+	    }
+
+	    if (B == 0) {
+		/* 一次完整的除法：(u, v) = (v, u mod v) */
+		int uMag[] = new int[len-top];
+		System.arraycopy(u, top, uMag, 0, uMag.length);
+		int vMag[] = new int[len-vtop];
+		System.arraycopy(v, vtop, vMag, 0, vMag.length);
+		int qr[][] = divideMagnitude(uMag, vMag);
+		for (int i=top; i<len - qr[1].length; i++)
+		    u[i] = 0;
+		System.arraycopy(qr[1], 0, u, len - qr[1].length, qr[1].length);
+		int[] s = u;
+		u = v;
+		v = s;
+		if (x != null) {
+		    BigInteger s0 = x[0];
+		    x[0] = x[1];
+		    x[1] = s0.subtract(new BigInteger(qr[0], 1).multiply(x[1]));
+		}
+	    } else {
+		/*
+		 * (u, v) = (A*u + B*v, C*u + D*v)。两个结果都非负并且不大于 u；系数的绝对值小于 2**31，
+		 * 所以每个 int 的两个乘积之和加上进位仍在 long 的范围内。
+		 */
+		long cu = 0, cv = 0;
+		for (int i=len-1; i>=clean; i--) {
+		    long ui = u[i] & LONG_MASK, vi = v[i] & LONG_MASK;
+		    long su = A*ui + B*vi + cu;
+		    long sv = C*ui + D*vi + cv;
+		    t[i] = (int) su;
+		    w[i] = (int) sv;
+		    cu = su >> 32;
+		    cv = sv >> 32;
+		}
+		int[] s = u;
+		u = t;
+		t = s;
+		s = v;
+		v = w;
+		w = s;
+		clean = top;
+		if (x != null) {
+		    BigInteger x0 = x[0], x1 = x[1];
+		    x[0] = valueOf(A).multiply(x0).add(valueOf(B).multiply(x1));
+		    x[1] = valueOf(C).multiply(x0).add(valueOf(D).multiply(x1));
+		}
+	    }
+	}
+	return trustedStripLeadingZeroInts(u);
+    }
+
+    /**
+     * 返回右对齐的量级 x 右移 shift 位后的低 64 位，假设结果小于 2**63。
+     */
+    private static long topBits(int[] x, int shift) {
+	int i = x.length - 1 - (shift >>> 5);
+	int bits = shift & 31;
+	long lo = (i >= 0 ? x[i] & LONG_MASK : 0);
+	long mid = (i >= 1 ? x[i-1] & LONG_MASK : 0);
+	long hi = (i >= 2 ? x[i-2] & LONG_MASK : 0);
+	long r = (mid << 32 | lo) >>> bits;
+	if (bits != 0)
+	    r |= hi << (64 - bits);
+	return r;
     }
 
    /**
@@ -407,7 +1010,7 @@ public class BigInteger extends Number {
      * 回值为 (-1 * this) 的 BigInteger。
      */
     public BigInteger negate() {
-	return new BigInteger(this.magnitude, -this.signum);
+	return new BigInteger(this.mag, -this.signum);
     }
 
     /**
@@ -431,72 +1034,278 @@ public class BigInteger extends Number {
     }
 
     /**
-     * 返回一个 BigInteger，其值为 (this ** exponent) mod m。 （如果 exponent == 1，则返回值为 (this mod m)。
+     * 返回一个 BigInteger，其值为 (this ** exponent) mod m。 （如果 exponent == 1，则返回值为 (this mod m)；
+	 * 如果 exponent == 0，则返回值为 (1 mod m)，即 m == 1 时为 0；
 	 * 如果 exponent < 0，则返回值为 (this ** -exponent) 的模乘逆。）如果 m <= 0，则抛出 ArithmeticException。
      */
     public BigInteger modPow(BigInteger exponent, BigInteger m) {
-	if (m.signum <= 0)
-	    throw new ArithmeticException("BigInteger: modulus not positive");
-
-	/* Plumb 中的一个错误的解决方法：x^0 (y) 为 x != 0 转储核心 */
-	if (exponent.signum == 0)
-	    return ONE;
+	/* 每次调用都要重新做按模数的预计算；对同一模数反复取幂时应直接使用 Modulus */
+	return new Modulus(m).modPow(this, exponent);
+    }
 
-	boolean invertResult;
-	if ((invertResult = (exponent.signum < 0)))
-	    exponent = exponent.negate();
+    /**
+     * 返回一个 BigInteger，其值为 (bases[0] ** exponents[0] * bases[1] ** exponents[1] * ...) mod m，
+     * 结果在 [0, m) 中。负指数表示对应底数的模乘逆的幂；如果这样的底数没有模 m 的逆，则抛出 ArithmeticException。
+     * 所有的幂共用同一串平方（Straus/Shamir 技巧），比分别调用 modPow 再相乘快得多。
+     * 如果 m <= 0 或两个数组长度不同，则抛出 ArithmeticException 或 IllegalArgumentException。
+     */
+    public static BigInteger multiModPow(BigInteger bases[],
+					 BigInteger exponents[], BigInteger m) {
+	return new Modulus(m).multiModPow(bases, exponents);
+    }
 
-	BigInteger base = (this.signum < 0 || this.compareTo(m) >= 0 
-			   ? this.mod(m) : this);
-	BigInteger result;
-	if (m.testBit(0)) { /* 奇数模数：只需将其传递给 Plumb */
-	    result = new BigInteger
-	     (plumbModPow(base.magnitude, exponent.magnitude, m.magnitude), 1);
-	} else {
-	    /*
-	     * 偶数模数。 Plumb 只支持奇数，所以拆成“奇数部分”（m1）和二的幂（m2），
-	     * 用 Plumb 对 mod m1 取幂，手动对 mod m2 取幂，用中国剩余定理组合结果。
-	     */
+    /**
+     * 返回 (bases[0] ** exponents[0] * bases[1] ** exponents[1] * ...) mod m。
+     * 假设 m 为大于 1 的奇数，每个底数都在 [0, m) 中，每个指数都大于零；
+     * inv 和 r2 是 montgomeryInverse 和 montgomeryR2 为 m 预先算好的常数。
+     * 在 Montgomery 形式下（x 表示为 x*R mod m，R = 2**(32*m.mag.length)）做滑动窗口取幂，
+     * 每次模乘只需一次乘法和一次 Montgomery 约简，不需要除法。供 Modulus 使用。
+     */
+    static BigInteger oddMultiModPow(BigInteger bases[], BigInteger exponents[],
+				     BigInteger m, int inv, int r2[]) {
+	int mod[] = m.mag;
+	int len = mod.length;
+	int prod[] = new int[2*len];
+
+	/* 转换为 Montgomery 形式：base = b * R**2 * R**-1 mod m */
+	int base[][] = new int[bases.length][];
+	int exp[][] = new int[bases.length][];
+	for (int i=0; i<bases.length; i++) {
+	    base[i] = toFixedLength(bases[i].mag, len);
+	    mulMod(base[i], r2, mod, inv, 0, prod, base[i]);
+	    exp[i] = exponents[i].mag;
+	}
 
-	    /* 将 m 分成奇数部分 (m1) 和 2 的幂 (m2) */
-	    int p = m.getLowestSetBit();      /* 划分的最大 pow 为 2 m */
-	    BigInteger m1 = m.shiftRight(p);  /* m/2**p */
-	    BigInteger m2 = ONE.shiftLeft(p); /* 2**p */
+	int result[] = windowPow(base, exp, mod, inv, 0, len);
 
-	    /* 计算（基指数）mod m1 */
-	    BigInteger a1 = new BigInteger
-	     (plumbModPow(base.magnitude, exponent.magnitude, m1.magnitude),1);
+	/* 转出 Montgomery 形式：result * R**-1 mod m */
+	for (int i=0; i<len; i++)
+	    prod[i] = 0;
+	System.arraycopy(result, 0, prod, len, len);
+	montReduce(prod, mod, inv, result);
+	return new BigInteger(trustedStripLeadingZeroInts(result), 1);
+    }
 
-	    /* 计算（指数）mod m2 */
-	    BigInteger a2 = base.modPow2(exponent, p);
+    /**
+     * 返回 (a * b) mod m，假设 m 为大于 1 的奇数且 0 <= a, b < m，inv 和 r2 同 oddMultiModPow。
+     * 先做一次 Montgomery 乘法得到 a*b*R**-1，再乘以 R**2 约简回 a*b，全程不需要除法。供 Modulus 使用。
+     */
+    static BigInteger montgomeryMultiply(BigInteger a, BigInteger b,
+					 BigInteger m, int inv, int r2[]) {
+	int mod[] = m.mag;
+	int len = mod.length;
+	int prod[] = new int[2*len];
+	int result[] = toFixedLength(a.mag, len);
+	mulMod(result, toFixedLength(b.mag, len), mod, inv, 0, prod, result);
+	mulMod(result, r2, mod, inv, 0, prod, result);
+	return new BigInteger(trustedStripLeadingZeroInts(result), 1);
+    }
 
-	    /* 使用中国剩余定理(Chinese Remainder Theorem)组合结果 */
-	    BigInteger y1 = m2.modInverse(m1);
-	    BigInteger y2 = m1.modInverse(m2);
-	    result = a1.multiply(m2).multiply(y1).add
-		    (a2.multiply(m1).multiply(y2)).mod(m);
-	}
+    /**
+     * 返回 R**2 mod m（R = 2**(32*m.mag.length)），表示为长度与 m.mag 相同的 int 数组。供 Modulus 使用。
+     */
+    static int[] montgomeryR2(BigInteger m) {
+	return toFixedLength(ONE.shiftLeft(64*m.mag.length).mod(m).mag,
+			     m.mag.length);
+    }
 
-	return (invertResult ? result.modInverse(m) : result);
+    /**
+     * 返回 -m**-1 mod 2**32，其中 m 为奇数。供 Modulus 使用。
+     */
+    static int montgomeryInverse(BigInteger m) {
+	return montgomeryInverse(m.mag[m.mag.length-1]);
     }
-    
+
     /**
-     * Returns (this ** exponent) mod(2**p)
+     * 返回 (bases[0] ** exponents[0] * bases[1] ** exponents[1] * ...) mod(2**p)。
+     * 假设每个底数都 >= 0，每个指数都大于零，并且 p > 0。供 Modulus 使用。
      */
-    private BigInteger modPow2(BigInteger exponent, int p) {
+    static BigInteger multiModPow2(BigInteger bases[], BigInteger exponents[],
+				   int p) {
 	/*
-	 * 使用重复平方技巧执行求幂运算，如模数所示切掉高阶位。
+	 * 与奇数模数共用滑动窗口的取幂循环；每次乘法后只保留低 p 位，
+	 * 按 int 数组截断，不需要逐位移动指数。
 	 */
-	BigInteger result = valueOf(1);
-	BigInteger baseToPow2 = this.mod2(p);
-	while (exponent.signum != 0) {
-	    if (exponent.testBit(0))
-		result = result.multiply(baseToPow2).mod2(p);
-	    exponent = exponent.shiftRight(1);
-	    if (exponent.signum != 0)
-		baseToPow2 = new BigInteger(
-			       plumbSquare(baseToPow2.magnitude), 1).mod2(p);
+	int len = (p+31)/32;
+	int base[][] = new int[bases.length][];
+	int exp[][] = new int[bases.length][];
+	for (int i=0; i<bases.length; i++) {
+	    base[i] = toFixedLength(bases[i].mod2(p).mag, len);
+	    exp[i] = exponents[i].mag;
+	}
+	int result[] = windowPow(base, exp, null, 0, p, len);
+	return new BigInteger(trustedStripLeadingZeroInts(result), 1);
+    }
+
+    /*
+     * 滑动窗口取幂的窗口宽度选择：指数位数超过 expModThreshTable[i] 时窗口宽度至少为 i+2。
+     */
+    private static int expModThreshTable[] = {7, 25, 81, 241, 673, 1793};
+
+    /**
+     * 用从左到右的交错滑动窗口计算 base[0] ** exp[0] * base[1] ** exp[1] * ...（exp[i] 是正数的量级）。
+     * 所有数都是长度为 len 的 int 数组。mod 不为 null 时在 Montgomery 形式下对 mod 取模
+     * （inv 为 -mod**-1 mod 2**32）；否则对 2**p 取模。
+     * 每个底数按自己指数的长度选择窗口宽度并预先计算奇数次幂表；所有底数共用同一串平方，
+     * 只在各自窗口结束的位置乘入对应的表项。循环中只使用一个乘积缓冲区，不再分配对象。
+     */
+    private static int[] windowPow(int base[][], int exp[][], int mod[],
+				   int inv, int p, int len) {
+	int prod[] = new int[2*len];
+	int tables[][][] = new int[base.length][][];
+	int windows[][] = new int[base.length][];
+	int maxBits = 0;
+	for (int b=0; b<base.length; b++) {
+	    int ebits = 32*(exp[b].length-1) + bitLen(exp[b][0]);
+	    maxBits = Math.max(maxBits, ebits);
+	    int wbits = 1;
+	    while (wbits <= expModThreshTable.length
+		   && ebits > expModThreshTable[wbits-1])
+		wbits++;
+	    windows[b] = slidingWindows(exp[b], ebits, wbits);
+
+	    /* tables[b][i] = base[b] ** (2*i+1) */
+	    int table[][] = new int[1 << (wbits-1)][];
+	    table[0] = base[b];
+	    if (table.length > 1) {
+		int base2[] = new int[len];
+		mulMod(base[b], base[b], mod, inv, p, prod, base2);
+		for (int i=1; i<table.length; i++) {
+		    table[i] = new int[len];
+		    mulMod(table[i-1], base2, mod, inv, p, prod, table[i]);
+		}
+	    }
+	    tables[b] = table;
+	}
+
+	int result[] = new int[len];
+	boolean isOne = true;
+	for (int i=maxBits-1; i>=0; i--) {
+	    if (!isOne)
+		mulMod(result, result, mod, inv, p, prod, result);
+	    for (int b=0; b<base.length; b++) {
+		if (i >= windows[b].length || windows[b][i] == 0)
+		    continue;
+		int entry[] = tables[b][windows[b][i] >>> 1];
+		if (isOne) {
+		    System.arraycopy(entry, 0, result, 0, len);
+		    isOne = false;
+		} else {
+		    mulMod(result, entry, mod, inv, p, prod, result);
+		}
+	    }
+	}
+	return result;
+    }
+
+    /**
+     * 返回正数量级 exp（共 ebits 位）的滑动窗口分解 digits：exp = sum(digits[i] * 2**i)，
+     * 每个非零的 digits[i] 都是小于 2**wbits 的奇数，即在第 i 位处乘以 base ** digits[i]。
+     */
+    private static int[] slidingWindows(int exp[], int ebits, int wbits) {
+	int digits[] = new int[ebits];
+	int i = ebits-1;
+	while (i >= 0) {
+	    if (!testBit(exp, i)) {
+		i--;
+		continue;
+	    }
+
+	    /* 取以 1 结尾、宽度不超过 wbits 的窗口 exp[i..low] */
+	    int low = Math.max(i - wbits + 1, 0);
+	    while (!testBit(exp, low))
+		low++;
+	    int window = 0;
+	    for (int j=i; j>=low; j--)
+		window = (window << 1) | (testBit(exp, j) ? 1 : 0);
+	    digits[low] = window;
+	    i = low-1;
+	}
+	return digits;
+    }
+
+    /**
+     * 如果量级 x 的第 n 位为 1，则返回 true。
+     */
+    private static boolean testBit(int x[], int n) {
+	int index = x.length - 1 - (n >>> 5);
+	return index >= 0 && (x[index] & (1 << (n & 31))) != 0;
+    }
+
+    /**
+     * dest = a * b，mod 不为 null 时做 Montgomery 约简，否则截断到低 p 位。
+     * a、b、dest 的长度都是 dest.length，prod 是长度为其两倍的乘积缓冲区；dest 可以与 a 或 b 相同。
+     */
+    private static void mulMod(int a[], int b[], int mod[], int inv, int p,
+			       int prod[], int dest[]) {
+	int len = dest.length;
+	if (a == b)
+	    squareToLen(a, len, prod);
+	else
+	    multiplyToLen(a, len, b, len, prod);
+
+	if (mod != null) {
+	    montReduce(prod, mod, inv, dest);
+	} else {
+	    System.arraycopy(prod, len, dest, 0, len);
+	    int excessBits = 32*len - p;
+	    dest[0] &= (int) ((1L << (32-excessBits)) - 1);
+	}
+    }
+
+    /**
+     * Montgomery 约简：把 t * R**-1 mod mod 写入 dest，其中 t 的长度为 2*mod.length，
+     * 并假设 t < mod * R。t 的内容会被破坏。
+     */
+    private static void montReduce(int t[], int mod[], int inv, int dest[]) {
+	int len = mod.length;
+	int tlen = t.length;
+	int overflow = 0;
+	for (int i=0; i<len; i++) {
+	    /* 加上 u * mod，使当前最低的 int 变为零 */
+	    long u = (t[tlen-1-i] * inv) & LONG_MASK;
+	    long carry = 0;
+	    for (int j=len-1, k=tlen-1-i; j>=0; j--, k--) {
+		long sum = (mod[j] & LONG_MASK) * u + (t[k] & LONG_MASK) + carry;
+		t[k] = (int) sum;
+		carry = sum >>> 32;
+	    }
+	    for (int k=len-1-i; carry != 0 && k>=0; k--) {
+		long sum = (t[k] & LONG_MASK) + carry;
+		t[k] = (int) sum;
+		carry = sum >>> 32;
+	    }
+	    overflow += (int) carry;
+	}
+
+	/* 高半部分（加上 overflow * R）小于 2*mod，最多再减一次 */
+	System.arraycopy(t, 0, dest, 0, len);
+	if (overflow != 0 || intArrayCmp(dest, mod) >= 0) {
+	    long borrow = 0;
+	    for (int i=len-1; i>=0; i--) {
+		long diff = (dest[i] & LONG_MASK) - (mod[i] & LONG_MASK) + borrow;
+		dest[i] = (int) diff;
+		borrow = diff >> 32;
+	    }
 	}
+    }
+
+    /**
+     * 返回 -m0**-1 mod 2**32，m0 为奇数。使用牛顿迭代，每次迭代正确的位数加倍。
+     */
+    private static int montgomeryInverse(int m0) {
+	int x = m0;		/* m0 * m0 == 1 (mod 8)，已有 3 位正确 */
+	for (int i=0; i<4; i++)
+	    x *= 2 - m0*x;
+	return -x;
+    }
+
+    /**
+     * 返回长度为 len 的 x 的副本，前面补零。假设 x 没有前导零并且 x.length <= len。
+     */
+    private static int[] toFixedLength(int x[], int len) {
+	int result[] = new int[len];
+	System.arraycopy(x, 0, result, len - x.length, x.length);
 	return result;
     }
 
@@ -507,17 +1316,17 @@ public class BigInteger extends Number {
 	if (bitLength() <= p)
 	    return this;
 
-	/* 复制剩余字节的大小 */
-	int numBytes = (p+7)/8;
-	byte[] mag = new byte[numBytes];
-	for (int i=0; i<numBytes; i++)
-	    mag[i] = magnitude[i + (magnitude.length - numBytes)];
+	/* 复制剩余 int 的大小 */
+	int numInts = (p+31)/32;
+	int[] mag = new int[numInts];
+	for (int i=0; i<numInts; i++)
+	    mag[i] = this.mag[i + (this.mag.length - numInts)];
 
 	/* 屏蔽掉任何多余的位 */
-	int excessBits = 8*numBytes - p;
-	mag[0] &= (1 << (8-excessBits)) - 1;
+	int excessBits = 32*numInts - p;
+	mag[0] &= (int) ((1L << (32-excessBits)) - 1);
 
-	return (mag[0]==0 ? new BigInteger(1, mag) : new BigInteger(mag, 1));
+	return new BigInteger(trustedStripLeadingZeroInts(mag), 1);
     }
 
     /**
@@ -531,10 +1340,53 @@ public class BigInteger extends Number {
 	BigInteger modVal = this.remainder(m);
 	if (modVal.signum < 0)
 	    modVal = modVal.add(m);
-	if (!modVal.gcd(m).equals(ONE))
+
+	if (m.equals(ONE))
+	    return ZERO;
+	if (modVal.equals(ONE))
+	    return ONE;
+
+	/* 模数是 2 的幂时用牛顿迭代，不需要除法 */
+	int p = m.getLowestSetBit();
+	if (p == m.bitLength() - 1) {
+	    if (!modVal.testBit(0))
+		throw new ArithmeticException("BigInteger not invertible");
+	    return modVal.modInverseMod2(p);
+	}
+	if (modVal.signum == 0)
+	    throw new ArithmeticException("BigInteger not invertible");
+
+	/*
+	 * 扩展 Lehmer 算法。u == x[0] * modVal (mod m)，v == x[1] * modVal (mod m)，
+	 * 从 (u, v) = (m, modVal) 开始；结束时 u 就是 gcd(modVal, m)。
+	 */
+	BigInteger x[] = {ZERO, ONE};
+	int[] g = lehmerGcd(m.mag, modVal.mag, x);
+	if (g.length != 1 || g[0] != 1)
 	    throw new ArithmeticException("BigInteger not invertible");
 
-	return new BigInteger(plumbModInverse(modVal.magnitude,m.magnitude),1);
+	return x[0].mod(m);
+    }
+
+    /**
+     * 返回 this**-1 mod 2**k。假设 this 是正奇数并且 k > 0。
+     * 先求出最低 32 位的逆元，再用牛顿（Hensel 提升）迭代 x = x*(2 - this*x)，每次把正确的位数加倍。
+     */
+    private BigInteger modInverseMod2(int k) {
+	int inv = -montgomeryInverse(mag[mag.length-1]);
+	BigInteger x = new BigInteger(new int[] {inv}, 1).mod2(Math.min(k, 32));
+
+	for (int bits=32; bits<k; ) {
+	    bits = Math.min(2*bits, k);
+	    /* y == this*x mod 2**bits，并且 y == 1 mod 2**(bits/2) */
+	    BigInteger y = mod2(bits).multiply(x).mod2(bits);
+	    if (!y.equals(ONE)) {
+		/* x*(2-y) == 2**bits - (x*(y-2) mod 2**bits)，y 为奇数所以后者不为零 */
+		BigInteger d = x.multiply(y.subtract(TWO)).mod2(bits);
+		x = ONE.shiftLeft(bits).subtract(d);
+	    }
+	}
+	return x;
     }
 
 
@@ -544,27 +1396,35 @@ public class BigInteger extends Number {
      * 返回值为 (this << n) 的 BigInteger。 （计算地板（this * 2**n）。）
      */
     public BigInteger shiftLeft(int n) {
-	if (n==0)
+	if (n==0 || signum==0)
 	    return this;
 	if (n<0)
 	    return shiftRight(-n);
 
-	int nBytes = n/8;
-	int nBits = n%8;
-
-	byte result[] = new byte[(bitLength()+n)/8+1];
+	/* 符号-量级形式下左移是精确的：只移动量级 */
+	int nInts = n >>> 5;
+	int nBits = n & 31;
+	int magLen = mag.length;
+	int newMag[];
 	if (nBits == 0) {
-	    for (int i=nBytes; i<result.length; i++)
-		result[result.length-1-i] = getByte(i-nBytes);
+	    newMag = new int[magLen + nInts];
+	    System.arraycopy(mag, 0, newMag, 0, magLen);
 	} else {
-	    for (int i=nBytes; i<result.length; i++)
-		result[result.length-1-i] = (byte)
-		    ((getByte(i-nBytes) << nBits)
-			| (i==nBytes ? 0
-			   : ((getByte(i-nBytes-1)&0xff) >> (8-nBits))));
+	    int i = 0;
+	    int nBits2 = 32 - nBits;
+	    int highBits = mag[0] >>> nBits2;
+	    if (highBits != 0) {
+		newMag = new int[magLen + nInts + 1];
+		newMag[i++] = highBits;
+	    } else {
+		newMag = new int[magLen + nInts];
+	    }
+	    int j = 0;
+	    while (j < magLen-1)
+		newMag[i++] = mag[j++] << nBits | mag[j] >>> nBits2;
+	    newMag[i] = mag[j] << nBits;
 	}
-
-	return valueOf(result);
+	return new BigInteger(newMag, signum);
     }
 
     /**
@@ -578,33 +1438,70 @@ public class BigInteger extends Number {
 	if (n >= bitLength())
 	    return (signum<0 ? valueOf(-1) : ZERO);
 
-	int nBytes = n/8;
-	int nBits = n%8;
-
-	byte result[] = new byte[(bitLength-n)/8+1];
+	/* 先右移量级 */
+	int nInts = n >>> 5;
+	int nBits = n & 31;
+	int magLen = mag.length;
+	int newMag[];
 	if (nBits == 0) {
-	    for (int i=0; i<result.length; i++)
-		result[result.length-1-i] = getByte(nBytes+i);
+	    newMag = new int[magLen - nInts];
+	    System.arraycopy(mag, 0, newMag, 0, magLen - nInts);
 	} else {
-	    for (int i=0; i<result.length; i++)
-		result[result.length-1-i] = (byte)
-		((getByte(nBytes+i+1)<<8 | (getByte(nBytes+i)&0xff)) >> nBits);
+	    int i = 0;
+	    int highBits = mag[0] >>> nBits;
+	    if (highBits != 0) {
+		newMag = new int[magLen - nInts];
+		newMag[i++] = highBits;
+	    } else {
+		newMag = new int[magLen - nInts - 1];
+	    }
+	    int nBits2 = 32 - nBits;
+	    int j = 0;
+	    while (j < magLen - nInts - 1)
+		newMag[i++] = (mag[j++] << nBits2) | (mag[j] >>> nBits);
 	}
 
-	return valueOf(result);
+	/* 负数移出了非零位时，向负无穷取整即量级加一 */
+	if (signum < 0) {
+	    boolean onesLost = false;
+	    for (int i=magLen-1, j=magLen-nInts; i>=j && !onesLost; i--)
+		onesLost = (mag[i] != 0);
+	    if (!onesLost && nBits != 0)
+		onesLost = (mag[magLen - nInts - 1] << (32 - nBits) != 0);
+	    if (onesLost)
+		newMag = increment(newMag);
+	}
+	return new BigInteger(newMag, signum);
+    }
+
+    /**
+     * 把量级 val 就地加一并返回；只有进位超出最高 int 时才分配一个更长的数组。
+     */
+    private static int[] increment(int val[]) {
+	for (int i=val.length-1; i>=0; i--)
+	    if (++val[i] != 0)
+		return val;
+	int result[] = new int[val.length + 1];
+	result[0] = 1;
+	return result;
     }
 
 
     // Bitwise Operations
 
+    /*
+     * 位运算按 int 读取二进制补码表示（getInt），把结果写入一个大端的二进制补码 int 数组，
+     * 再由 valueOf(int[]) 在可能时直接把这个数组转换为结果的量级。
+     */
+
     /**
      * 返回值为 (this & val) 的 BigInteger。 （如果 this 和 val 都是负数，此方法返回负数。）
      */
     public BigInteger and(BigInteger val) {
-	byte[] result = new byte[Math.max(byteLength(), val.byteLength())];
+	int result[] = new int[Math.max(intLength(), val.intLength())];
 	for (int i=0; i<result.length; i++)
-	    result[i] = (byte) (getByte(result.length-i-1)
-				& val.getByte(result.length-i-1));
+	    result[i] = (getInt(result.length-i-1)
+			 & val.getInt(result.length-i-1));
 
 	return valueOf(result);
     }
@@ -613,10 +1510,10 @@ public class BigInteger extends Number {
      * 返回值为 (this | val) 的 BigInteger。 （如果 this 或 val 为负，则此方法返回负数。）
      */
     public BigInteger or(BigInteger val) {
-	byte[] result = new byte[Math.max(byteLength(), val.byteLength())];
+	int result[] = new int[Math.max(intLength(), val.intLength())];
 	for (int i=0; i<result.length; i++)
-	    result[i] = (byte) (getByte(result.length-i-1)
-				| val.getByte(result.length-i-1));
+	    result[i] = (getInt(result.length-i-1)
+			 | val.getInt(result.length-i-1));
 
 	return valueOf(result);
     }
@@ -625,10 +1522,10 @@ public class BigInteger extends Number {
      * 返回值为 (this ^ val) 的 BigInteger。 （如果 this 和 val 恰好其中之一为负，则此方法返回负数。）
      */
     public BigInteger xor(BigInteger val) {
-	byte[] result = new byte[Math.max(byteLength(), val.byteLength())];
+	int result[] = new int[Math.max(intLength(), val.intLength())];
 	for (int i=0; i<result.length; i++)
-	    result[i] = (byte) (getByte(result.length-i-1)
-				^ val.getByte(result.length-i-1));
+	    result[i] = (getInt(result.length-i-1)
+			 ^ val.getInt(result.length-i-1));
 
 	return valueOf(result);
     }
@@ -637,9 +1534,9 @@ public class BigInteger extends Number {
      * 返回值为 (~this) 的 BigInteger。 （如果此数字为非负数，则此方法返回负值。）
      */
     public BigInteger not() {
-	byte[] result = new byte[byteLength()];
+	int result[] = new int[intLength()];
 	for (int i=0; i<result.length; i++)
-	    result[i] = (byte) ~getByte(result.length-i-1);
+	    result[i] = ~getInt(result.length-i-1);
 
 	return valueOf(result);
     }
@@ -649,10 +1546,10 @@ public class BigInteger extends Number {
 	 * （如果 this 为负且 val 为正，则此方法返回一个负数。）
      */
     public BigInteger andNot(BigInteger val) {
-	byte[] result = new byte[Math.max(byteLength(), val.byteLength())];
+	int result[] = new int[Math.max(intLength(), val.intLength())];
 	for (int i=0; i<result.length; i++)
-	    result[i] = (byte) (getByte(result.length-i-1)
-				& ~val.getByte(result.length-i-1));
+	    result[i] = (getInt(result.length-i-1)
+			 & ~val.getInt(result.length-i-1));
 
 	return valueOf(result);
     }
@@ -667,7 +1564,7 @@ public class BigInteger extends Number {
 	if (n<0)
 	    throw new ArithmeticException("Negative bit address");
 
-	return (getByte(n/8) & (1 << (n%8))) != 0;
+	return (getInt(n >>> 5) & (1 << (n & 31))) != 0;
     }
 
     /**
@@ -677,13 +1574,13 @@ public class BigInteger extends Number {
 	if (n<0)
 	    throw new ArithmeticException("Negative bit address");
 
-	int byteNum = n/8;
-	byte[] result = new byte[Math.max(byteLength(), byteNum+2)];
+	int intNum = n >>> 5;
+	int result[] = new int[Math.max(intLength(), intNum+2)];
 
 	for (int i=0; i<result.length; i++)
-	    result[result.length-i-1] = getByte(i);
+	    result[result.length-i-1] = getInt(i);
 
-	result[result.length-byteNum-1] |= (1 << (n%8));
+	result[result.length-intNum-1] |= (1 << (n & 31));
 
 	return valueOf(result);
     }
@@ -695,13 +1592,13 @@ public class BigInteger extends Number {
 	if (n<0)
 	    throw new ArithmeticException("Negative bit address");
 
-	int byteNum = n/8;
-	byte[] result = new byte[Math.max(byteLength(), (n+1)/8+1)];
+	int intNum = n >>> 5;
+	int result[] = new int[Math.max(intLength(), ((n + 1) >>> 5) + 1)];
 
 	for (int i=0; i<result.length; i++)
-	    result[result.length-i-1] = getByte(i);
+	    result[result.length-i-1] = getInt(i);
 
-	result[result.length-byteNum-1] &= ~(1 << (n%8));
+	result[result.length-intNum-1] &= ~(1 << (n & 31));
 
 	return valueOf(result);
     }
@@ -713,13 +1610,13 @@ public class BigInteger extends Number {
 	if (n<0)
 	    throw new ArithmeticException("Negative bit address");
 
-	int byteNum = n/8;
-	byte[] result = new byte[Math.max(byteLength(), byteNum+2)];
+	int intNum = n >>> 5;
+	int result[] = new int[Math.max(intLength(), intNum+2)];
 
 	for (int i=0; i<result.length; i++)
-	    result[result.length-i-1] = getByte(i);
+	    result[result.length-i-1] = getInt(i);
 
-	result[result.length-byteNum-1] ^= (1 << (n%8));
+	result[result.length-intNum-1] ^= (1 << (n & 31));
 
 	return valueOf(result);
     }
@@ -730,21 +1627,23 @@ public class BigInteger extends Number {
      */
     public int getLowestSetBit() {
 	/*
-	 * 第一次执行此方法时初始化最低设置位字段。该方法依赖于 int 修改的原子性；如果没有这个保证，它就必须同步。
+	 * 第一次执行此方法时初始化最低设置位字段。字段只读一次、在局部变量中算好后只写一次，
+	 * 所以并发调用最多重复计算同一个值，依赖 int 修改的原子性而不需要同步。
 	 */
-	if (lowestSetBit == -2) {
+	int lsb = lowestSetBit;
+	if (lsb == -2) {
 	    if (signum == 0) {
-		lowestSetBit = -1;
+		lsb = -1;
 	    } else {
-		/* 搜索最低阶非零字节 */
+		/* 搜索最低阶非零 int（负数的最低位与其量级相同） */
 		int i;
-		byte b;
-		for (i=0; (b = getByte(i))==0; i++)
+		for (i=mag.length-1; mag[i]==0; i--)
 		    ;
-		lowestSetBit = 8*i + trailingZeroCnt[b & 0xFF];
+		lsb = 32*(mag.length-1-i) + trailingZeroCnt(mag[i]);
 	    }
+	    lowestSetBit = lsb;
 	}
-	return lowestSetBit;
+	return lsb;
     }
 
 
@@ -756,122 +1655,82 @@ public class BigInteger extends Number {
      */
     public int bitLength() {
 	/*
-	 * 第一次执行此方法时初始化 bitLength 字段。该方法依赖于 int 修改的原子性；如果没有这个保证，它就必须同步。
+	 * 第一次执行此方法时初始化 bitLength 字段，与 getLowestSetBit 一样在局部变量中计算后只写一次。
 	 */
-	if (bitLength == -1) {
+	int n = bitLength;
+	if (n == -1) {
 	    if (signum == 0) {
-		bitLength = 0;
+		n = 0;
 	    } else {
 		/* 计算幅度的位长 */
-		int magBitLength = 8*(magnitude.length-1)
-		    		   + bitLen[magnitude[0] & 0xff];
-
-		if (signum < 0) {
-		    /* 检查幅度是否是 2 的幂 */
-		    boolean pow2 = (bitCnt[magnitude[0]&0xff] == 1);
-		    for(int i=1; i<magnitude.length && pow2; i++)
-			pow2 = (magnitude[i]==0);
+		n = 32*(mag.length-1) + bitLen(mag[0]);
 
-		    bitLength = (pow2 ? magBitLength-1 : magBitLength);
-		} else {
-		    bitLength = magBitLength;
-		}
+		/* 幅度是 2 的幂（最低设置位就是最高位）的负数少一位 */
+		if (signum < 0 && getLowestSetBit() == n-1)
+		    n--;
 	    }
+	    bitLength = n;
 	}
-	return bitLength;
+	return n;
     }
 
-    /*
-     * bitLen[i] 是 i 的二进制表示中的位数。
-     */
-    private final static byte bitLen[] = {
-	0, 1, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 4, 4, 4, 4,
-	5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5,
-	6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6,
-	6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6,
-	7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7,
-	7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7,
-	7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7,
-	7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7,
-	8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8,
-	8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8,
-	8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8,
-	8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8,
-	8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8,
-	8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8,
-	8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8,
-	8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8};
-
     /**
      * 返回此数字的二进制补码表示中与其符号位不同的位数。在 BigInteger 上实现位向量样式集时，此方法很有用。
      */
     public int bitCount() {
 	/*
-	 * 第一次执行此方法时初始化 bitCount 字段。该方法依赖于 int 修改的原子性；如果没有这个保证，它就必须同步。
+	 * 第一次执行此方法时初始化 bitCount 字段，与 getLowestSetBit 一样在局部变量中计算后只写一次。
 	 */
-	if (bitCount == -1) {
+	int n = bitCount;
+	if (n == -1) {
 	    /* 计算幅度中的位数 */
-	    int magBitCount = 0;
-	    for (int i=0; i<magnitude.length; i++)
-		magBitCount += bitCnt[magnitude[i] & 0xff];
-
-	    if (signum < 0) {
-		/* 计算幅度中的尾随零 */
-		int magTrailingZeroCount = 0, j;
-		for (j=magnitude.length-1; magnitude[j]==0; j--)
-		    magTrailingZeroCount += 8;
-		magTrailingZeroCount += trailingZeroCnt[magnitude[j] & 0xff];
-
-		bitCount = magBitCount + magTrailingZeroCount - 1;
-	    } else {
-		bitCount = magBitCount;
-	    }
+	    n = 0;
+	    for (int i=0; i<mag.length; i++)
+		n += bitCnt(mag[i]);
+
+	    /* 负数的二进制补码 ~(|x|-1) 中与符号不同的位数是 |x|-1 的一位数，即加上尾随零再减一 */
+	    if (signum < 0)
+		n += getLowestSetBit() - 1;
+	    bitCount = n;
 	}
-	return bitCount;
+	return n;
     }
 
     /*
-     * bitCnt[i] 是 i 的二进制表示中 1 的位数。
-     */
-    private final static byte bitCnt[] = {
-	0, 1, 1, 2, 1, 2, 2, 3, 1, 2, 2, 3, 2, 3, 3, 4,
-	1, 2, 2, 3, 2, 3, 3, 4, 2, 3, 3, 4, 3, 4, 4, 5,
-	1, 2, 2, 3, 2, 3, 3, 4, 2, 3, 3, 4, 3, 4, 4, 5,
-	2, 3, 3, 4, 3, 4, 4, 5, 3, 4, 4, 5, 4, 5, 5, 6,
-	1, 2, 2, 3, 2, 3, 3, 4, 2, 3, 3, 4, 3, 4, 4, 5,
-	2, 3, 3, 4, 3, 4, 4, 5, 3, 4, 4, 5, 4, 5, 5, 6,
-	2, 3, 3, 4, 3, 4, 4, 5, 3, 4, 4, 5, 4, 5, 5, 6,
-	3, 4, 4, 5, 4, 5, 5, 6, 4, 5, 5, 6, 5, 6, 6, 7,
-	1, 2, 2, 3, 2, 3, 3, 4, 2, 3, 3, 4, 3, 4, 4, 5,
-	2, 3, 3, 4, 3, 4, 4, 5, 3, 4, 4, 5, 4, 5, 5, 6,
-	2, 3, 3, 4, 3, 4, 4, 5, 3, 4, 4, 5, 4, 5, 5, 6,
-	3, 4, 4, 5, 4, 5, 5, 6, 4, 5, 5, 6, 5, 6, 6, 7,
-	2, 3, 3, 4, 3, 4, 4, 5, 3, 4, 4, 5, 4, 5, 5, 6,
-	3, 4, 4, 5, 4, 5, 5, 6, 4, 5, 5, 6, 5, 6, 6, 7,
-	3, 4, 4, 5, 4, 5, 5, 6, 4, 5, 5, 6, 5, 6, 6, 7,
-	4, 5, 5, 6, 5, 6, 6, 7, 5, 6, 6, 7, 6, 7, 7, 8};
+     * 以下三个例程不查表，按字计算一个 int 的位长、一的位数和尾随零位数（二分查找与并行按位求和，见 Hacker's Delight 第 5 章）。
+     */
 
-    /*
-     * trailing Zero not[i] 是 i 的二进制表示中的尾随零位数。
-     */
-    private final static byte trailingZeroCnt[] = {
-	8, 0, 1, 0, 2, 0, 1, 0, 3, 0, 1, 0, 2, 0, 1, 0,
-	4, 0, 1, 0, 2, 0, 1, 0, 3, 0, 1, 0, 2, 0, 1, 0,
-	5, 0, 1, 0, 2, 0, 1, 0, 3, 0, 1, 0, 2, 0, 1, 0,
-	4, 0, 1, 0, 2, 0, 1, 0, 3, 0, 1, 0, 2, 0, 1, 0,
-	6, 0, 1, 0, 2, 0, 1, 0, 3, 0, 1, 0, 2, 0, 1, 0,
-	4, 0, 1, 0, 2, 0, 1, 0, 3, 0, 1, 0, 2, 0, 1, 0,
-	5, 0, 1, 0, 2, 0, 1, 0, 3, 0, 1, 0, 2, 0, 1, 0,
-	4, 0, 1, 0, 2, 0, 1, 0, 3, 0, 1, 0, 2, 0, 1, 0,
-	7, 0, 1, 0, 2, 0, 1, 0, 3, 0, 1, 0, 2, 0, 1, 0,
-	4, 0, 1, 0, 2, 0, 1, 0, 3, 0, 1, 0, 2, 0, 1, 0,
-	5, 0, 1, 0, 2, 0, 1, 0, 3, 0, 1, 0, 2, 0, 1, 0,
-	4, 0, 1, 0, 2, 0, 1, 0, 3, 0, 1, 0, 2, 0, 1, 0,
-	6, 0, 1, 0, 2, 0, 1, 0, 3, 0, 1, 0, 2, 0, 1, 0,
-	4, 0, 1, 0, 2, 0, 1, 0, 3, 0, 1, 0, 2, 0, 1, 0,
-	5, 0, 1, 0, 2, 0, 1, 0, 3, 0, 1, 0, 2, 0, 1, 0,
-	4, 0, 1, 0, 2, 0, 1, 0, 3, 0, 1, 0, 2, 0, 1, 0};
+    /* 返回 w 的（无符号）二进制表示中的位数，即 32 减去前导零位数（BigDecimal 也使用它） */
+    static int bitLen(int w) {
+	if (w == 0)
+	    return 0;
+	int n = 31;
+	if ((w >>> 16) == 0) { n -= 16; w <<= 16; }
+	if ((w >>> 24) == 0) { n -= 8; w <<= 8; }
+	if ((w >>> 28) == 0) { n -= 4; w <<= 4; }
+	if ((w >>> 30) == 0) { n -= 2; w <<= 2; }
+	return n + (w >>> 31);
+    }
+
+    /* 返回 w 的二进制表示中 1 的位数 */
+    private static int bitCnt(int w) {
+	w -= (w >>> 1) & 0x55555555;
+	w = (w & 0x33333333) + ((w >>> 2) & 0x33333333);
+	w = (w + (w >>> 4)) & 0x0f0f0f0f;
+	w += w >>> 8;
+	w += w >>> 16;
+	return w & 0x3f;
+    }
 
+    /* 返回 w 的二进制表示中的尾随零位数。假设 w != 0 */
+    private static int trailingZeroCnt(int w) {
+	int n = 31, y;
+	y = w << 16; if (y != 0) { n -= 16; w = y; }
+	y = w << 8; if (y != 0) { n -= 8; w = y; }
+	y = w << 4; if (y != 0) { n -= 4; w = y; }
+	y = w << 2; if (y != 0) { n -= 2; w = y; }
+	return n - ((w << 1) >>> 31);
+    }
 
 
     // Primality Testing(素性测试)
@@ -882,11 +1741,7 @@ public class BigInteger extends Number {
 	 * 执行时间与确定性参数的值成正比。
      */
     public boolean isProbablePrime(int certainty) {
-	/*
-	 * 此测试取自 DSA 规范。
-	 */
-	int n = certainty/2;
-	if (n <= 0)
+	if (certainty/2 <= 0)
 	    return true;
 	BigInteger w = this.abs();
 	if (w.equals(TWO))
@@ -894,31 +1749,271 @@ public class BigInteger extends Number {
 	if (!w.testBit(0) || w.equals(ONE))
 	    return false;
 
-	/* 找到 a 和 m 使得 m 是奇数并且 w == 1 + 2**a * m */
-	BigInteger m = w.subtract(ONE);
-	int a = m.getLowestSetBit();
-	m = m.shiftRight(a);
+	/* 先用小素数试除；没有小因子并且小于 SMALL_PRIME_LIMIT**2 的数就是素数 */
+	int factor = w.smallPrimeFactor();
+	if (factor != 0)
+	    return w.mag.length == 1 && w.mag[0] == factor;
+	if (w.bitLength() <= 2*SMALL_PRIME_BITS)
+	    return true;
 
-	/* Do the tests */
-	Random rnd = new Random();
-	for(int i=0; i<n; i++) {
-	    /* 在 (1, w) 上生成均匀随机数 */
-	    BigInteger b;
-	    do {
-		b = new BigInteger(w.bitLength(), rnd);
-	    } while (b.compareTo(ONE) <= 0 || b.compareTo(w) >= 0);
+	return w.primeToCertainty(certainty);
+    }
 
-	    int j = 0;
-	    BigInteger z = b.modPow(m, w);
-	    while(!((j==0 && z.equals(ONE)) || z.equals(w.subtract(ONE)))) {
-		if (j>0 && z.equals(ONE) || ++j==a)
+    /**
+     * 对已经排除了小素数因子的奇数 w = this（w > SMALL_PRIME_LIMIT）做概率素性测试，
+     * 确定性参数的含义同 isProbablePrime。
+     *
+     * 先做 Baillie-PSW 测试：以 2 为底的强概率素数测试加上强 Lucas 概率素数测试。
+     * 目前还没有已知能通过它的合数，这里把它计为 BPSW_CERTAINTY 的确定性；
+     * 只有调用者要求更高的确定性时，才再加上随机底数的 Miller-Rabin 测试。
+     */
+    private boolean primeToCertainty(int certainty) {
+	if (certainty/2 <= 0)
+	    return true;
+	BigInteger w = this;
+	Modulus mw = new Modulus(w);
+	BigInteger wMinusOne = w.subtract(ONE);
+	int a = wMinusOne.getLowestSetBit();
+	BigInteger m = wMinusOne.shiftRight(a);
+	if (!w.passesMillerRabin(TWO, m, a, mw) || !w.passesLucas(mw))
+	    return false;
+
+	int rounds = (certainty - BPSW_CERTAINTY + 1)/2;
+	if (rounds > 0) {
+	    Random rnd = primalityRandom();
+	    for (int i=0; i<rounds; i++) {
+		/* 在 (1, w) 上生成均匀随机数 */
+		BigInteger b;
+		do {
+		    b = new BigInteger(w.bitLength(), rnd);
+		} while (b.compareTo(ONE) <= 0 || b.compareTo(w) >= 0);
+
+		if (!w.passesMillerRabin(b, m, a, mw))
 		    return false;
-		z = z.modPow(TWO, w);
 	    }
 	}
 	return true;
     }
 
+    /*
+     * Baillie-PSW 测试计作的确定性。超过这个值的部分每两位加一轮随机底数的 Miller-Rabin 测试。
+     */
+    private static final int BPSW_CERTAINTY = 100;
+
+    /* 额外 Miller-Rabin 轮数使用的共享随机数源，第一次需要时才创建 */
+    private static Random primalityRandom;
+
+    private static synchronized Random primalityRandom() {
+	if (primalityRandom == null)
+	    primalityRandom = new Random();
+	return primalityRandom;
+    }
+
+    /**
+     * 以 b 为底的强概率素数测试（Miller-Rabin 的一轮）。此测试取自 DSA 规范。
+     * 假设 this 是大于 2 的奇数 w，w == 1 + 2**a * m 且 m 为奇数，mw 是 w 的 Modulus。
+     */
+    private boolean passesMillerRabin(BigInteger b, BigInteger m, int a,
+				      Modulus mw) {
+	BigInteger wMinusOne = this.subtract(ONE);
+	int j = 0;
+	BigInteger z = mw.modPow(b, m);
+	while(!((j==0 && z.equals(ONE)) || z.equals(wMinusOne))) {
+	    if (j>0 && z.equals(ONE) || ++j==a)
+		return false;
+	    z = mw.modMultiply(z, z);
+	}
+	return true;
+    }
+
+    /**
+     * 强 Lucas 概率素数测试，参数按 Selfridge 的方法 A 选取：D 取 5, -7, 9, -11, ... 中
+     * 第一个使 Jacobi(D, this) == -1 的值，P = 1，Q = (1 - D)/4。
+     * 假设 this 是没有小素数因子的奇数，mw 是它的 Modulus。
+     */
+    private boolean passesLucas(Modulus mw) {
+	/* 找 D；完全平方数找不到这样的 D，所以搜索一段时间后检查一次 */
+	int d = 5;
+	for (int tries = 0; ; tries++) {
+	    int j = jacobiSymbol(d, this);
+	    if (j == -1)
+		break;
+	    if (j == 0)		/* gcd(|D|, this) > 1，而 this 没有小因子 */
+		return false;
+	    if (tries == 10 && sqrtRemainder(this)[1].signum == 0)
+		return false;
+	    d = (d < 0 ? 2 - d : -2 - d);
+	}
+	BigInteger bigD = valueOf(d).mod(this);
+	BigInteger q = valueOf((1 - d)/4).mod(this);
+
+	/* this + 1 == k * 2**s，k 为奇数 */
+	BigInteger nPlusOne = this.add(ONE);
+	int s = nPlusOne.getLowestSetBit();
+	BigInteger k = nPlusOne.shiftRight(s);
+
+	/* 从高位到低位计算 U_k、V_k 和 Q**k */
+	BigInteger u = ONE, v = ONE, qk = q;
+	for (int i=k.bitLength()-2; i>=0; i--) {
+	    /* 下标加倍：U_2h = U_h*V_h，V_2h = V_h**2 - 2*Q**h */
+	    u = mw.modMultiply(u, v);
+	    v = mw.modMultiply(v, v).subtract(qk.shiftLeft(1)).mod(this);
+	    qk = mw.modMultiply(qk, qk);
+	    if (k.testBit(i)) {
+		/* 下标加一：U_h+1 = (U_h + V_h)/2，V_h+1 = (D*U_h + V_h)/2 */
+		BigInteger u1 = lucasHalf(u.add(v));
+		v = lucasHalf(mw.modMultiply(bigD, u).add(v));
+		u = u1;
+		qk = mw.modMultiply(qk, q);
+	    }
+	}
+
+	if (u.signum == 0 || v.signum == 0)
+	    return true;
+	for (int r=1; r<s; r++) {
+	    v = mw.modMultiply(v, v).subtract(qk.shiftLeft(1)).mod(this);
+	    if (v.signum == 0)
+		return true;
+	    qk = mw.modMultiply(qk, qk);
+	}
+	return false;
+    }
+
+    /**
+     * 返回 x/2 mod this，假设 this 为奇数并且 0 <= x < 2*this。
+     */
+    private BigInteger lucasHalf(BigInteger x) {
+	if (x.testBit(0))
+	    x = x.add(this);
+	x = x.shiftRight(1);
+	return (x.compareTo(this) >= 0 ? x.subtract(this) : x);
+    }
+
+    /**
+     * 返回 Jacobi 符号 (d/n)，其中 d 为奇数，n 为大于 1 的奇数。
+     */
+    private static int jacobiSymbol(int d, BigInteger n) {
+	int nLow = n.mag[n.mag.length-1];
+	int j = 1;
+	if (d < 0) {		/* (-1/n) = -1 当且仅当 n == 3 (mod 4) */
+	    d = -d;
+	    if ((nLow & 3) == 3)
+		j = -j;
+	}
+	if (d == 1)
+	    return j;
+
+	/* 二次互反律：d 和 n 都是奇数，(d/n) = (n/d)，除非两者都 == 3 (mod 4) */
+	if ((d & nLow & 2) != 0)
+	    j = -j;
+	return j * jacobiSymbol(n.remainder(d), d);
+    }
+
+    /**
+     * 返回 Jacobi 符号 (a/m)，其中 0 <= a 并且 m 为正奇数。
+     */
+    private static int jacobiSymbol(int a, int m) {
+	int j = 1;
+	a %= m;
+	while (a != 0) {
+	    while ((a & 1) == 0) {	/* (2/m) = -1 当且仅当 m == 3, 5 (mod 8) */
+		a >>= 1;
+		int r = m & 7;
+		if (r == 3 || r == 5)
+		    j = -j;
+	    }
+	    int t = a;
+	    a = m;
+	    m = t;
+	    if ((a & m & 2) != 0)
+		j = -j;
+	    a %= m;
+	}
+	return (m == 1 ? j : 0);
+    }
+
+    /**
+     * 返回这个正数的最小的小于 SMALL_PRIME_LIMIT 的奇素数因子，没有这样的因子时返回 0。
+     * 每组小素数的乘积用一次按 int 的求余得到，再对组内每个素数做 int 求余。
+     */
+    private int smallPrimeFactor() {
+	int start = 0;
+	for (int g=0; g<smallPrimeProducts.length; g++) {
+	    int r = remainder(smallPrimeProducts[g]);
+	    for (int i=start; i<smallPrimeGroupEnd[g]; i++)
+		if (r % smallPrimes[i] == 0)
+		    return smallPrimes[i];
+	    start = smallPrimeGroupEnd[g];
+	}
+	return 0;
+    }
+
+    /**
+     * 返回 |this| mod d，其中 d > 0。逐个 int 求余，不产生中间对象。
+     */
+    private int remainder(int d) {
+	long ld = d;
+	long rem = 0;
+	for (int i=0; i<mag.length; i++)
+	    rem = ((rem << 32) | (mag[i] & LONG_MASK)) % ld;
+	return (int) rem;
+    }
+
+    /*
+     * smallPrimes 是小于 SMALL_PRIME_LIMIT（2**SMALL_PRIME_BITS）的全部奇素数，用于试除。
+     * 它们依次分组，每组的乘积都小于 2**31，存于 smallPrimeProducts；
+     * smallPrimeGroupEnd[g] 是第 g 组之后第一个素数在 smallPrimes 中的下标。
+     * sievePrimes 是小于 SIEVE_PRIME_LIMIT（2**SIEVE_PRIME_BITS）的全部奇素数，用于生成素数时的筛法。
+     */
+    private static final int SMALL_PRIME_BITS = 10;
+    private static final int SMALL_PRIME_LIMIT = 1 << SMALL_PRIME_BITS;
+    private static final int SIEVE_PRIME_BITS = 16;
+    private static final int SIEVE_PRIME_LIMIT = 1 << SIEVE_PRIME_BITS;
+    private static int smallPrimes[];
+    private static int smallPrimeProducts[];
+    private static int smallPrimeGroupEnd[];
+    private static int sievePrimes[];
+    static {
+	/* 埃拉托色尼筛法 */
+	boolean composite[] = new boolean[SIEVE_PRIME_LIMIT];
+	int numSieve = 0, count = 0;
+	for (int i=3; i<SIEVE_PRIME_LIMIT; i+=2) {
+	    if (composite[i])
+		continue;
+	    numSieve++;
+	    if (i < SMALL_PRIME_LIMIT)
+		count++;
+	    for (int j=3*i; j<SIEVE_PRIME_LIMIT; j+=2*i)
+		composite[j] = true;
+	}
+	sievePrimes = new int[numSieve];
+	for (int i=3, n=0; i<SIEVE_PRIME_LIMIT; i+=2)
+	    if (!composite[i])
+		sievePrimes[n++] = i;
+	smallPrimes = new int[count];
+	System.arraycopy(sievePrimes, 0, smallPrimes, 0, count);
+
+	int products[] = new int[count];
+	int ends[] = new int[count];
+	int groups = 0;
+	long product = 1;
+	for (int i=0; i<count; i++) {
+	    if (product * smallPrimes[i] > Integer.MAX_VALUE) {
+		products[groups] = (int) product;
+		ends[groups++] = i;
+		product = 1;
+	    }
+	    product *= smallPrimes[i];
+	}
+	products[groups] = (int) product;
+	ends[groups++] = count;
+
+	smallPrimeProducts = new int[groups];
+	smallPrimeGroupEnd = new int[groups];
+	System.arraycopy(products, 0, smallPrimeProducts, 0, groups);
+	System.arraycopy(ends, 0, smallPrimeGroupEnd, 0, groups);
+    }
+
 
     // Comparison Operations（比较操作）
 
@@ -928,28 +2023,30 @@ public class BigInteger extends Number {
 	 * 执行这些比较的建议习语是：(x.compareTo(y) <op> 0), 其中 <op> 是六个比较运算符之一。
      */
     public int compareTo(BigInteger val) {
-	return (signum==val.signum
-		? signum*byteArrayCmp(magnitude, val.magnitude)
-		: (signum>val.signum ? 1 : -1));
+	if (signum != val.signum)
+	    return (signum>val.signum ? 1 : -1);
+	if (isSmall() && val.isSmall()) {
+	    long x = smallValue(), y = val.smallValue();
+	    return (x < y ? -1 : (x == y ? 0 : 1));
+	}
+	return signum*intArrayCmp(mag, val.mag);
     }
 
     /*
-     * 返回 -1、0 或 +1，因为大端无符号字节数组 arg1 是 <、== 或 > arg2。
+     * 返回 -1、0 或 +1，因为大端无符号 int 数组 arg1 是 <、== 或 > arg2。
+     * 假设两个数组都没有前导零 int。
      */
-    private static int byteArrayCmp(byte[] arg1, byte[] arg2) {
+    private static int intArrayCmp(int[] arg1, int[] arg2) {
 	if (arg1.length < arg2.length)
 	    return -1;
 	if (arg1.length > arg2.length)
 	    return 1;
 
-	/* 参数长度相等；比较值 */
+	/* 参数长度相等；找到第一个不同的 int，只对它做一次无符号比较 */
 	for (int i=0; i<arg1.length; i++) {
-	    int b1 = arg1[i] & 0xff;
-	    int b2 = arg2[i] & 0xff;
-	    if (b1 < b2)
-		return -1;
-	    if (b1 > b2)
-		return 1;
+	    int b1 = arg1[i], b2 = arg2[i];
+	    if (b1 != b2)
+		return ((b1 ^ 0x80000000) < (b2 ^ 0x80000000) ? -1 : 1);
 	}
 	return 0;
     }
@@ -962,15 +2059,20 @@ public class BigInteger extends Number {
 	    return false;
 	BigInteger xInt = (BigInteger) x;
 
-	if (xInt.signum != signum || xInt.magnitude.length != magnitude.length)
+	if (xInt.signum != signum || xInt.mag.length != mag.length)
 	    return false;
 
 	/* 这个测试只是一个优化，可能有帮助也可能没有帮助 */
 	if (xInt == this)
 	    return true;
 
-	for (int i=0; i<magnitude.length; i++)
-	    if (xInt.magnitude[i] != magnitude[i])
+	/* 两个散列码都已经算好并且不同时，值一定不同 */
+	int h = hashCode, xh = xInt.hashCode;
+	if (h != 0 && xh != 0 && h != xh)
+	    return false;
+
+	for (int i=0; i<mag.length; i++)
+	    if (xInt.mag[i] != mag[i])
 		return false;
 
 	return true;
@@ -997,12 +2099,23 @@ public class BigInteger extends Number {
      * Computes a hash code for this object.(计算此对象的哈希码。)
      */
     public int hashCode() {
-	int hashCode = 0;
-
-	for (int i=0; i<magnitude.length; i++)
-	    hashCode = 37*hashCode + (magnitude[i] & 0xff);
-
-	return hashCode * signum;
+	/* 与 bitLength 等缓存字段一样，只读一次字段，在局部变量中算好后只写一次 */
+	int h = hashCode;
+	if (h == 0) {
+	    /*
+	     * 按大端字节顺序散列幅度，与字节幅度的散列值保持一致：每个 int 的四个字节
+	     * b0..b3 合起来是 h = 37**4*h + 37**3*b0 + 37**2*b1 + 37*b2 + b3。
+	     * 最高 int 中的前导零字节不会改变结果，因为此时 h 仍为零。
+	     */
+	    for (int i=0; i<mag.length; i++) {
+		int w = mag[i];
+		h = 1874161*h + 50653*(w >>> 24) + 1369*((w >>> 16) & 0xff)
+		    + 37*((w >>> 8) & 0xff) + (w & 0xff);
+	    }
+	    h *= signum;
+	    hashCode = h;
+	}
+	return h;
     }
 
     // Format Converters(格式转换器)
@@ -1015,49 +2128,156 @@ public class BigInteger extends Number {
 	 * （此表示与 (String, int) 构造函数兼容。）
      */
     public String toString(int radix) {
+	return toString(radix, 1);
+    }
+
+    /**
+     * 与 toString(int) 相同，但最多用 parallelism 个线程（包括调用线程）转换很大的数：
+     * 分治转换中商和余数写入缓冲区中互不重叠的区间，可以同时转换。
+     * parallelism <= 1 时只在调用线程中转换。
+     */
+    public String toString(int radix, int parallelism) {
 	if (signum == 0)
 	    return "0";
 	if (radix < Character.MIN_RADIX || radix > Character.MAX_RADIX)
 	    radix = 10;
 
-	/* 计算数字组数的上限并分配空间 */
-	int maxNumDigitGroups = (magnitude.length + 6)/7;
-	String digitGroup[] = new String[maxNumDigitGroups];
+	/* 按位数估计字符数的上限并一次分配好缓冲区 */
+	int maxDigits = (int) (bitLength() * LOG_TWO / Math.log(radix)) + 2;
+	char buf[] = new char[maxDigits + 1];
+
+	/* 从右向左写入数字，最后补上符号 */
+	int start = toString(this.abs(), buf, buf.length, radix, 0, parallelism);
+	if (signum<0)
+	    buf[--start] = '-';
+	return new String(buf, start, buf.length - start);
+    }
 
-	/* 将数字转换为字符串，一次转换一个数字组 */
-	BigInteger tmp = this.abs();
-	int numGroups = 0;
-	while (tmp.signum != 0) {
-	    BigInteger b[] = tmp.divideAndRemainder(longRadix[radix]);
-	    digitGroup[numGroups++] = Long.toString(b[1].longValue(), radix);
-	    tmp = b[0];
+    /**
+     * 将非负数 u 的 radix 进制表示写入 buf 中以 end 结尾的位置，
+     * 至少写出 digits 位（不足时在前面补零），返回第一个字符的下标。
+     * 较大的数除以 radix**(2**n)（约为 u 的平方根），商和余数分别递归转换，
+     * 余数部分补足 2**n 位；这样除法的代价随 Burnikel-Ziegler 除法一起降到次二次。
+     * 只写 buf 中 [返回值, end) 区间，所以余数可以与商同时在另一个线程中转换。
+     */
+    private static int toString(BigInteger u, char buf[], int end, int radix,
+				int digits, int parallelism) {
+	if (u.mag.length <= SCHOENHAGE_BASE_CONVERSION_THRESHOLD)
+	    return smallToString(u, buf, end, radix, digits);
+
+	/* 选取 n 使 radix**(2**n) 大约有 u 的一半位数 */
+	int b = u.bitLength();
+	int n = (int) Math.round(Math.log(b * LOG_TWO / Math.log(radix)) / LOG_TWO
+				 - 1.0);
+	BigInteger qr[] = u.divideAndRemainder(radixConversionPower(radix, n));
+	int expectedDigits = 1 << n;
+
+	/* 余数正好占 expectedDigits 位，商写在它的左边 */
+	if (parallelism > 1 && u.mag.length >= PARALLEL_THRESHOLD) {
+	    int share = parallelism / 2;
+	    StringTask low = new StringTask(qr[1], buf, end, radix,
+					    expectedDigits, share);
+	    low.start();
+	    int start = toString(qr[0], buf, end - expectedDigits, radix,
+				 digits - expectedDigits, parallelism - share);
+	    low.finish();
+	    return start;
 	}
+	int start = toString(qr[1], buf, end, radix, expectedDigits, parallelism);
+	return toString(qr[0], buf, start, radix, digits - expectedDigits,
+			parallelism);
+    }
 
-	/* 将符号（如果有）和第一个数字组放入结果缓冲区 */
-	StringBuffer buf = new StringBuffer(numGroups*digitsPerLong[radix]+1);
-	if (signum<0)
-	    buf.append('-');
-	buf.append(digitGroup[numGroups-1]);
+    /**
+     * 在另一个线程中转换分治转换的余数部分（参见 toString(BigInteger, char[], int, int, int, int)）。
+     */
+    private static class StringTask extends ForkedTask {
+	private BigInteger u;
+	private char buf[];
+	private int end, radix, digits, parallelism;
+
+	StringTask(BigInteger u, char buf[], int end, int radix, int digits,
+		   int parallelism) {
+	    this.u = u;
+	    this.buf = buf;
+	    this.end = end;
+	    this.radix = radix;
+	    this.digits = digits;
+	    this.parallelism = parallelism;
+	}
+
+	void compute() {
+	    BigInteger.toString(u, buf, end, radix, digits, parallelism);
+	}
+    }
 
-	/* 附加用前导零填充的剩余数字组 */
-	for (int i=numGroups-2; i>=0; i--) {
-	    /* 为此数字组添加（任何）前导零 */
-	    int numLeadingZeros = digitsPerLong[radix]-digitGroup[i].length();
-	    if (numLeadingZeros != 0)
-		buf.append(zeros[numLeadingZeros]);
-	    buf.append(digitGroup[i]);
+    /**
+     * 递归转换的基本情形：把 u 的量级复制到一个工作数组中，
+     * 原地反复除以 intRadix[radix]，每次得到 digitsPerInt[radix] 位数字直接写入 buf。
+     * 写入位置与返回值的约定同 toString(BigInteger, char[], int, int, int)。
+     * 只写 buf 中 [返回值, end) 区间：最高一组只写到最高的非零数字为止，左边的零只按 digits 补足。
+     */
+    private static int smallToString(BigInteger u, char buf[], int end,
+				     int radix, int digits) {
+	int work[] = new int[u.mag.length];
+	System.arraycopy(u.mag, 0, work, 0, work.length);
+	long divisor = intRadix[radix];
+	int groupDigits = digitsPerInt[radix];
+
+	int pos = end;
+	int first = 0;
+	while (first < work.length) {
+	    /* work = work / divisor，余数留在 rem 中 */
+	    long rem = 0;
+	    for (int i=first; i<work.length; i++) {
+		long cur = (rem << 32) | (work[i] & LONG_MASK);
+		long q = cur / divisor;
+		work[i] = (int) q;
+		rem = cur - q * divisor;
+	    }
+	    while (first < work.length && work[first] == 0)
+		first++;
+
+	    /* 最高一组只写到最高的非零数字为止，不在结果左边留下多余的零 */
+	    int group = (int) rem;
+	    boolean last = (first == work.length);
+	    for (int i=0; i<groupDigits && !(last && group == 0); i++) {
+		buf[--pos] = Character.forDigit(group % radix, radix);
+		group /= radix;
+	    }
 	}
 
-	return buf.toString();
+	/* 按要求补零 */
+	while (end - pos < digits)
+	    buf[--pos] = ZERO_CHAR;
+	return pos;
     }
 
-    /* zero[i] 是由 i 个连续的零组成的字符串。 */
-    private static String zeros[] = new String[64];
-    static {
-	zeros[63] =
-	    "000000000000000000000000000000000000000000000000000000000000000";
-	for (int i=0; i<63; i++)
-	    zeros[i] = zeros[63].substring(0, i);
+    /*
+     * radixPowerCache[radix][k] 是 radix**(2**k)，供分治的进制转换使用，按需逐级平方扩充。
+     */
+    private static BigInteger radixPowerCache[][] =
+	new BigInteger[Character.MAX_RADIX+1][];
+
+    /**
+     * 返回 radix**(2**k)，必要时扩充缓存。缓存数组只会整体替换，不会就地修改。
+     */
+    private static synchronized BigInteger radixConversionPower(int radix,
+								int k) {
+	BigInteger cache[] = radixPowerCache[radix];
+	if (cache == null) {
+	    cache = new BigInteger[1];
+	    cache[0] = valueOf(radix);
+	}
+	if (k >= cache.length) {
+	    BigInteger grown[] = new BigInteger[k+1];
+	    System.arraycopy(cache, 0, grown, 0, cache.length);
+	    for (int i=cache.length; i<=k; i++)
+		grown[i] = grown[i-1].square();
+	    cache = grown;
+	}
+	radixPowerCache[radix] = cache;
+	return cache[k];
     }
 
     /**
@@ -1074,32 +2294,181 @@ public class BigInteger extends Number {
      */
     public byte[] toByteArray() {
 	byte[] result = new byte[byteLength()];
-	for(int i=0; i<result.length; i++)
-	    result[i] = getByte(result.length-i-1);
-
+	writeTo(result, 0);
 	return result;
     }
 
+    /**
+     * 把此数字的二进制补码表示（与 toByteArray() 的内容相同）写入 buf 中从 off 开始的位置，返回写入的字节数，
+     * 即 (this.bitLength()/8 + 1)。不分配任何对象。如果 buf 中放不下，则抛出 IndexOutOfBoundsException，并且不写入任何字节。
+     */
+    public int writeTo(byte[] buf, int off) {
+	int len = byteLength();
+	if (off < 0 || off > buf.length - len)
+	    throw new IndexOutOfBoundsException();
+
+	/* 字节 k 从最低有效字节数起，每四个字节读取一次二进制补码 int */
+	for (int k=len-1; k>=0; ) {
+	    int nextInt = getInt(k >>> 2);
+	    do {
+		buf[off++] = (byte) (nextInt >>> (8*(k & 3)));
+	    } while ((k-- & 3) != 0);
+	}
+	return len;
+    }
+
+    /**
+     * 把此数字的二进制补码表示（与 toByteArray() 的内容相同）逐字节写入 out，返回写入的字节数。
+     * 不分配中间数组；out 应该是带缓冲的流。
+     */
+    public int writeTo(java.io.OutputStream out) throws java.io.IOException {
+	int len = byteLength();
+	for (int k=len-1; k>=0; ) {
+	    int nextInt = getInt(k >>> 2);
+	    do {
+		out.write(nextInt >>> (8*(k & 3)));
+	    } while ((k-- & 3) != 0);
+	}
+	return len;
+    }
+
+    /* readFrom 一开始最多分配的 int 数，之后随读到的字节按倍数增长 */
+    private static final int READ_CHUNK_INTS = 1024;
+
+    /**
+     * 从 in 中读取 len 个字节的大端二进制补码表示（例如 writeTo 写出的内容），返回对应的 BigInteger。
+     * 字节直接组合成量级，不分配中间数组。len 必须至少为 1，否则将抛出 NumberFormatException；
+     * 如果流在 len 个字节之前结束，则抛出 EOFException。
+     * len 来自流中的长度头时不可信，因此量级数组不按 len 一次分配，而是随着字节实际到达按倍数增长，
+     * 分配的空间始终不超过已读字节数的两倍（加上 READ_CHUNK_INTS）。
+     */
+    public static BigInteger readFrom(java.io.InputStream in, int len)
+	throws java.io.IOException {
+	if (len <= 0)
+	    throw new NumberFormatException("Zero length BigInteger");
+
+	/* 跳过多余的符号字节（至少留下一个），b 是剩下的第一个字节 */
+	int b = readByte(in);
+	int sign = (b >= 0x80 ? -1 : 0);
+	int n = len;
+	while (n > 1 && b == (sign & 0xff)) {
+	    b = readByte(in);
+	    n--;
+	}
+	if (sign == 0 && b == 0)		/* 只剩一个零字节 */
+	    return ZERO;
+
+	/* 与 toIntArray 相同：必要时加一个额外的符号 int，最高的 int 按符号扩展 */
+	int nInts = (n + 3) >>> 2;
+	if (sign < 0 && (n & 3) == 0 && b < 0x80)
+	    nInts++;
+	int result[] = new int[Math.min(nInts, READ_CHUNK_INTS)];
+	int k = 0, w = sign;
+	int bytesLeft = n - 4*(nInts-1);	/* 最高的 int 中的字节数 */
+	if (bytesLeft <= 0) {
+	    result[k++] = sign;
+	    bytesLeft = 4;
+	}
+	for (int i=0; i<n; i++) {
+	    w = (w << 8) | (i == 0 ? b : readByte(in));
+	    if (--bytesLeft == 0) {
+		if (k == result.length) {	/* 已读满，按倍数增长 */
+		    int grown[] = new int[(int) Math.min(nInts, 2L*k)];
+		    System.arraycopy(result, 0, grown, 0, k);
+		    result = grown;
+		}
+		result[k++] = w;
+		bytesLeft = 4;
+	    }
+	}
+	return (sign < 0 ? new BigInteger(makePositive(result), -1)
+			 : new BigInteger(result, 1));
+    }
+
+    /**
+     * 把此数字以紧凑的变长格式写入 out，返回写入的字节数。可以用 readCompactFrom 读回。
+     *
+     * 格式以一个无符号 LEB128 变长整数 h 开头（每字节 7 位，低位在前，最高位表示后面还有字节）。
+     * 如果 bitLength() <= 62，h 是该值的 zigzag 编码左移一位（最低位为 0），没有后续字节，
+     * 所以 [-32, 32) 中的数只占一个字节，[-8192, 8192) 中的数占两个字节。
+     * 否则 h 为 (n << 1) | 1，后面跟着 writeTo 写出的 n 个字节的二进制补码表示。
+     */
+    public int writeCompactTo(java.io.OutputStream out)
+	throws java.io.IOException {
+	if (bitLength() <= 62) {
+	    long v = longValue();
+	    return writeVarLong(out, ((v << 1) ^ (v >> 63)) << 1);
+	}
+	int n = writeVarLong(out, ((long) byteLength() << 1) | 1);
+	return n + writeTo(out);
+    }
+
+    /**
+     * 从 in 中读取一个由 writeCompactTo 写出的 BigInteger。
+     * 如果流提前结束，则抛出 EOFException；如果格式不合法，则抛出 StreamCorruptedException。
+     */
+    public static BigInteger readCompactFrom(java.io.InputStream in)
+	throws java.io.IOException {
+	long h = 0;
+	for (int shift=0; ; shift+=7) {
+	    if (shift > 63)
+		throw new java.io.StreamCorruptedException(
+			"BigInteger: varint too long");
+	    int b = readByte(in);
+	    if (shift == 63 && (b & 0x7e) != 0)	/* 第 10 个字节只能携带第 63 位 */
+		throw new java.io.StreamCorruptedException(
+			"BigInteger: varint overflow");
+	    h |= (long) (b & 0x7f) << shift;
+	    if (b < 0x80)
+		break;
+	}
+
+	if ((h & 1) == 0) {
+	    long z = h >>> 1;
+	    return valueOf((z >>> 1) ^ -(z & 1));
+	}
+	long len = h >>> 1;
+	if (len == 0 || len > Integer.MAX_VALUE)
+	    throw new java.io.StreamCorruptedException(
+			"BigInteger: invalid length");
+	return readFrom(in, (int) len);
+    }
+
+    /**
+     * 把 h 作为无符号 LEB128 变长整数写入 out，返回写入的字节数。
+     */
+    private static int writeVarLong(java.io.OutputStream out, long h)
+	throws java.io.IOException {
+	int n = 1;
+	for ( ; (h & ~0x7fL) != 0; h >>>= 7, n++)
+	    out.write(((int) h & 0x7f) | 0x80);
+	out.write((int) h);
+	return n;
+    }
+
+    /**
+     * 从 in 中读取一个字节（0 到 255），流结束时抛出 EOFException。
+     */
+    private static int readByte(java.io.InputStream in)
+	throws java.io.IOException {
+	int b = in.read();
+	if (b < 0)
+	    throw new java.io.EOFException();
+	return b;
+    }
+
     /**
      * 将此数字转换为 int。根据 Java 语言规范的标准缩小原语转换。
      */
     public int intValue() {
-	int result = 0;
-
-	for (int i=3; i>=0; i--)
-	    result = (result << 8) + (getByte(i) & 0xff);
-	return result;
+	return getInt(0);
     }
 
     /**
      * 将此数字转换为长整数。根据 Java 语言规范的标准缩小原语转换。
      */
     public long longValue() {
-	long result = 0;
-
-	for (int i=7; i>=0; i--)
-	    result = (result << 8) + (getByte(i) & 0xff);
-	return result;
+	return ((long) getInt(1) << 32) | (getInt(0) & LONG_MASK);
     }
 
     /**
@@ -1107,8 +2476,39 @@ public class BigInteger extends Number {
 	 * 类似于 Java 语言规范中定义的双浮点数缩小原语转换：如果数字的幅度太大而无法表示为浮点数，它将酌情转换为无穷大或负无穷大。
      */
     public float floatValue() {
-	/* Somewhat inefficient, but guaranteed to work.（有点低效，但保证可以工作。） */
-	return Float.valueOf(this.toString()).floatValue();
+	if (signum == 0)
+	    return 0.0f;
+
+	/* 小于 2**63 的量级交给 long 到 float 的转换，它本身就是正确舍入的 */
+	int bits = 32*(mag.length-1) + bitLen(mag[0]);
+	if (bits <= 63)
+	    return (float) (signum * topBits(mag, 0));
+
+	int exponent = bits - 1;
+	if (exponent > 127)
+	    return (signum > 0 ? Float.POSITIVE_INFINITY : Float.NEGATIVE_INFINITY);
+
+	/*
+	 * 取最高的 25 位：24 位有效数字（含隐含的最高位）加一个舍入位；更低的位是否非零作为粘滞位。
+	 * 舍入位为一，并且粘滞位为一或者有效数字为奇数时进位（舍入到最近，平局取偶）。
+	 */
+	int shift = bits - 25;
+	int top = (int) topBits(mag, shift);
+	int significand = top >>> 1;
+	if ((top & 1) != 0
+	    && ((significand & 1) != 0 || getLowestSetBit() < shift))
+	    significand++;
+	if (significand == (1 << 24)) {		/* 进位溢出到下一个二的幂 */
+	    significand >>>= 1;
+	    exponent++;
+	    if (exponent > 127)
+		return (signum > 0 ? Float.POSITIVE_INFINITY
+				   : Float.NEGATIVE_INFINITY);
+	}
+	int floatBits = ((exponent + 127) << 23) | (significand & 0x7fffff);
+	if (signum < 0)
+	    floatBits |= 0x80000000;
+	return Float.intBitsToFloat(floatBits);
     }
 
     /**
@@ -1117,13 +2517,38 @@ public class BigInteger extends Number {
 	 * 如果数字的幅度太大而无法表示为 double，则将酌情将其转换为无穷大或负无穷大。
      */
     public double doubleValue() {
-	/* Somewhat inefficient, but guaranteed to work. （有点低效，但保证可以工作。）*/
-	return Double.valueOf(this.toString()).doubleValue();
-    }
-
-    static {
-	System.loadLibrary("math");
-	plumbInit();
+	if (signum == 0)
+	    return 0.0;
+
+	/* 小于 2**63 的量级交给 long 到 double 的转换，它本身就是正确舍入的 */
+	int bits = 32*(mag.length-1) + bitLen(mag[0]);
+	if (bits <= 63)
+	    return (double) (signum * topBits(mag, 0));
+
+	int exponent = bits - 1;
+	if (exponent > 1023)
+	    return (signum > 0 ? Double.POSITIVE_INFINITY
+			       : Double.NEGATIVE_INFINITY);
+
+	/* 与 floatValue 相同，取 53 位有效数字加一个舍入位，更低的位作为粘滞位 */
+	int shift = bits - 54;
+	long top = topBits(mag, shift);
+	long significand = top >>> 1;
+	if ((top & 1) != 0
+	    && ((significand & 1) != 0 || getLowestSetBit() < shift))
+	    significand++;
+	if (significand == (1L << 53)) {	/* 进位溢出到下一个二的幂 */
+	    significand >>>= 1;
+	    exponent++;
+	    if (exponent > 1023)
+		return (signum > 0 ? Double.POSITIVE_INFINITY
+				   : Double.NEGATIVE_INFINITY);
+	}
+	long doubleBits = ((long) (exponent + 1023) << 52)
+			  | (significand & ((1L << 52) - 1));
+	if (signum < 0)
+	    doubleBits |= 0x8000000000000000L;
+	return Double.longBitsToDouble(doubleBits);
     }
 
 
@@ -1132,43 +2557,96 @@ public class BigInteger extends Number {
 
     private final static char ZERO_CHAR = Character.forDigit(0, 2);
 
+    private final static long LONG_MASK = 0xffffffffL;
+
     /**
-     * 返回去除任何前导零字节的输入数组的副本。
+     * 返回去除任何前导零字节的输入数组的副本，每四个字节组成一个大端 int。
      */
-    static private byte[] stripLeadingZeroBytes(byte a[]) {
+    static private int[] stripLeadingZeroBytes(byte a[]) {
 	int keep;
 	
 	/* 查找第一个非零字节 */
 	for (keep=0; keep<a.length && a[keep]==0; keep++)
 	    ;
 
-	/* 分配新数组并复制输入数组的相关部分 */
-	byte result[] = new byte[a.length - keep];
-	for (int i = keep; i<a.length; i++)
-	    result[i - keep] = a[i];
+	/* 分配新数组并复制输入数组的相关部分（j 是从 LSB 数起的字节序号） */
+	int result[] = new int[(a.length - keep + 3)/4];
+	for (int i = a.length-1, j = 0; i >= keep; i--, j++)
+	    result[result.length-1-j/4] |= (a[i] & 0xff) << (8*(j%4));
 
 	return result;
     }
 
     /**
-     * 接受一个表示负 2 的补数的数组 a 并返回其值为 -a 的最小（无前导零字节）无符号数。
+     * 返回去除任何前导零 int 的输入数组。如果没有前导零，则直接返回输入数组本身。
      */
-    static private byte[] makePositive(byte a[]) {
+    static private int[] trustedStripLeadingZeroInts(int val[]) {
+	int keep;
+
+	/* 查找第一个非零 int */
+	for (keep=0; keep<val.length && val[keep]==0; keep++)
+	    ;
+	if (keep == 0)
+	    return val;
+
+	int result[] = new int[val.length - keep];
+	System.arraycopy(val, keep, result, 0, result.length);
+	return result;
+    }
+
+    /**
+     * 返回 a[off..off+len) 中大端二进制补码数的大端 int 数组，len 至少为 1。
+     * 多余的符号字节被去掉，最高的 int 按符号扩展：非负数的结果没有前导零 int，负数的结果可以直接交给 makePositive(int[])。
+     */
+    static private int[] toIntArray(byte a[], int off, int len) {
+	int end = off + len;
+	byte sign = (a[off] < 0 ? (byte) -1 : 0);
+
+	/* 跳过多余的符号字节 */
+	int keep;
+	for (keep=off; keep<end && a[keep]==sign; keep++)
+	    ;
+
+	/* 负数剩下的字节正好填满整数个 int 并且最高位为 0 时，需要一个额外的符号 int */
+	int n = end - keep;
+	int nInts = (n + 3) >>> 2;
+	if (sign < 0 && (n & 3) == 0 && (keep == end || a[keep] >= 0))
+	    nInts++;
+
+	/* 从最低的 int 开始，每个 int 从符号扩展开始移入至多四个字节 */
+	int result[] = new int[nInts];
+	for (int k=nInts-1, i=end; k>=0; k--) {
+	    int start = Math.max(keep, i - 4);
+	    int w = sign;
+	    for (int j=start; j<i; j++)
+		w = (w << 8) | (a[j] & 0xff);
+	    result[k] = w;
+	    i = start;
+	}
+	return result;
+    }
+
+    /**
+     * 接受一个表示负的二进制补码数的大端 int 数组，并返回其（无符号）量级。
+     * 没有多余的符号 int 时就地转换并返回 a 本身，否则返回一个新数组。
+     */
+    static private int[] makePositive(int a[]) {
 	int keep, j;
 
-	/* 查找输入的第一个非符号 (0xff) 字节 */
+	/* 查找输入的第一个非符号 (0xffffffff) int */
 	for (keep=0; keep<a.length && a[keep]==-1; keep++)
 	    ;
 
-	/* 分配输出数组。如果所有非符号字节都是 0x00，我们必须为一个额外的输出字节分配空间。 */
+	/* 如果所有非符号 int 都是 0x00，我们必须为一个额外的输出 int 分配空间。 */
 	for (j=keep; j<a.length && a[j]==0; j++)
 	    ;
-	int extraByte = (j==a.length ? 1 : 0);
-	byte result[] = new byte[a.length - keep + extraByte];
+	int extraInt = (j==a.length ? 1 : 0);
+	int result[] = (keep==0 && extraInt==0
+			? a : new int[a.length - keep + extraInt]);
 
-	/* 将输入的补码复制到输出中，留下额外的字节（如果存在）== 0x00 */
+	/* 将输入的补码复制到输出中，留下额外的 int（如果存在）== 0 */
 	for (int i = keep; i<a.length; i++)
-	    result[i - keep + extraByte] = (byte) ~a[i];
+	    result[i - keep + extraInt] = ~a[i];
 
 	/* 将一个补码加一以生成二进制补码 */
 	for (int i=result.length-1; ++result[i]==0; i--)
@@ -1177,38 +2655,1091 @@ public class BigInteger extends Number {
 	return result;
     }
 
+
+    /*
+     * 以下例程在大端无符号 int 数组（“幅度”）上执行算术运算，代替原来的本机方法。
+     * 除非另有说明，输入数组都不含前导零 int，并且不会被修改。
+     */
+
+    /**
+     * 返回 x + y 的幅度。
+     */
+    private static int[] add(int[] x, int[] y) {
+	/* 让 x 成为较长的数组 */
+	if (x.length < y.length) {
+	    int[] tmp = x;
+	    x = y;
+	    y = tmp;
+	}
+
+	int xIndex = x.length, yIndex = y.length;
+	int result[] = new int[xIndex];
+	long sum = 0;
+
+	/* 把公共部分相加 */
+	while (yIndex > 0) {
+	    sum = (x[--xIndex] & LONG_MASK) + (y[--yIndex] & LONG_MASK)
+		  + (sum >>> 32);
+	    result[xIndex] = (int) sum;
+	}
+
+	/* 传播进位并复制较长数组的剩余部分 */
+	boolean carry = (sum >>> 32 != 0);
+	while (xIndex > 0 && carry) {
+	    xIndex--;
+	    result[xIndex] = x[xIndex] + 1;
+	    carry = (result[xIndex] == 0);
+	}
+	while (xIndex > 0) {
+	    xIndex--;
+	    result[xIndex] = x[xIndex];
+	}
+
+	/* 如有必要，为最后的进位扩展结果 */
+	if (carry) {
+	    int bigger[] = new int[result.length + 1];
+	    System.arraycopy(result, 0, bigger, 1, result.length);
+	    bigger[0] = 1;
+	    return bigger;
+	}
+	return result;
+    }
+
+    /**
+     * 返回 big - little 的幅度。假设 big 的值大于 little 的值。
+     */
+    private static int[] subtract(int[] big, int[] little) {
+	int bigIndex = big.length, littleIndex = little.length;
+	int result[] = new int[bigIndex];
+	long difference = 0;
+
+	/* 把公共部分相减 */
+	while (littleIndex > 0) {
+	    difference = (big[--bigIndex] & LONG_MASK)
+			 - (little[--littleIndex] & LONG_MASK)
+			 + (difference >> 32);
+	    result[bigIndex] = (int) difference;
+	}
+
+	/* 传播借位并复制较长数组的剩余部分 */
+	boolean borrow = (difference >> 32 != 0);
+	while (bigIndex > 0 && borrow) {
+	    bigIndex--;
+	    result[bigIndex] = big[bigIndex] - 1;
+	    borrow = (result[bigIndex] == -1);
+	}
+	while (bigIndex > 0) {
+	    bigIndex--;
+	    result[bigIndex] = big[bigIndex];
+	}
+
+	return trustedStripLeadingZeroInts(result);
+    }
+
+    /**
+     * 返回 x[0..xlen-1] 与 y[0..ylen-1] 的乘积，长度为 xlen+ylen（可能有前导零）。
+     * 这是普通的“学校”乘法。如果 z 不为 null 且长度不小于 xlen+ylen，乘积直接写入 z 的前 xlen+ylen 个 int
+     * （原有内容被覆盖）并返回 z。
+     */
+    static int[] multiplyToLen(int[] x, int xlen, int[] y, int ylen, int[] z) {
+	int xstart = xlen - 1;
+	int ystart = ylen - 1;
+	if (z == null || z.length < xlen + ylen)
+	    z = new int[xlen + ylen];
+
+	/* 第一轮直接写入 z，不需要加上 z 中原有的值 */
+	long carry = 0;
+	for (int j=ystart, k=ystart+1+xstart; j>=0; j--, k--) {
+	    long product = (y[j] & LONG_MASK) * (x[xstart] & LONG_MASK) + carry;
+	    z[k] = (int) product;
+	    carry = product >>> 32;
+	}
+	z[xstart] = (int) carry;
+
+	for (int i=xstart-1; i>=0; i--) {
+	    carry = 0;
+	    for (int j=ystart, k=ystart+1+i; j>=0; j--, k--) {
+		long product = (y[j] & LONG_MASK) * (x[i] & LONG_MASK)
+			       + (z[k] & LONG_MASK) + carry;
+		z[k] = (int) product;
+		carry = product >>> 32;
+	    }
+	    z[i] = (int) carry;
+	}
+	return z;
+    }
+
+    /*
+     * 乘法和平方的算法选择阈值（以 int 计）。两个操作数都不短于 KARATSUBA_THRESHOLD 时
+     * 使用 Karatsuba 乘法，都不短于 TOOM_COOK_THRESHOLD 时使用 3 路 Toom-Cook 乘法，
+     * 都不短于 NTT_THRESHOLD 时使用数论变换乘法；
+     * 平方有一组单独的阈值，因为“学校”平方大约比“学校”乘法快一倍。
+     * 这些值是经验值，调整它们只影响性能，不影响结果。
+     */
+    final static int KARATSUBA_THRESHOLD = 80;
+    private final static int TOOM_COOK_THRESHOLD = 240;
+    private final static int NTT_THRESHOLD = 12000;
+    private final static int KARATSUBA_SQUARE_THRESHOLD = 128;
+    private final static int TOOM_COOK_SQUARE_THRESHOLD = 216;
+    private final static int NTT_SQUARE_THRESHOLD = 18000;
+
+    /**
+     * 返回 x[0..len-1] 的平方，长度为 2*len（可能有前导零）。
+     * 每个交叉乘积 x[i]*x[j]（i != j）只计算一次再乘以二，因此大约只需要 multiplyToLen 一半的乘法。
+     * z 的用法同 multiplyToLen。
+     */
+    private static int[] squareToLen(int[] x, int len, int[] z) {
+	int zlen = 2*len;
+	if (z == null || z.length < zlen) {
+	    z = new int[zlen];
+	} else {
+	    for (int i=0; i<zlen; i++)
+		z[i] = 0;
+	}
+
+	/* 累加交叉乘积 x[i]*x[j]（i < j）；它们的低位 int 落在 z[i+j+1] */
+	for (int i=len-2; i>=0; i--) {
+	    long xi = x[i] & LONG_MASK;
+	    long carry = 0;
+	    for (int j=len-1, k=i+len; j>i; j--, k--) {
+		long product = xi * (x[j] & LONG_MASK) + (z[k] & LONG_MASK) + carry;
+		z[k] = (int) product;
+		carry = product >>> 32;
+	    }
+	    z[2*i+1] = (int) carry;
+	}
+
+	/* 把交叉乘积之和乘以二 */
+	for (int i=0; i<zlen-1; i++)
+	    z[i] = (z[i] << 1) | (z[i+1] >>> 31);
+	z[zlen-1] <<= 1;
+
+	/* 加上对角线上的平方项 x[i]*x[i] */
+	long carry = 0;
+	for (int i=len-1; i>=0; i--) {
+	    long xi = x[i] & LONG_MASK;
+	    long square = xi * xi;
+	    long sum = (z[2*i+1] & LONG_MASK) + (square & LONG_MASK) + carry;
+	    z[2*i+1] = (int) sum;
+	    sum = (z[2*i] & LONG_MASK) + (square >>> 32) + (sum >>> 32);
+	    z[2*i] = (int) sum;
+	    carry = sum >>> 32;
+	}
+	return z;
+    }
+
+    /**
+     * 返回值为 (this * this) 的 BigInteger。与 multiply 一样，按大小选择平方算法。
+     */
+    private BigInteger square() {
+	return square(1);
+    }
+
+    /**
+     * 返回值为 (this * this) 的 BigInteger，数论变换平方最多使用 parallelism 个线程。
+     */
+    private BigInteger square(int parallelism) {
+	if (signum == 0)
+	    return ZERO;
+
+	int len = mag.length;
+	if (len < KARATSUBA_SQUARE_THRESHOLD)
+	    return new BigInteger(
+		       trustedStripLeadingZeroInts(squareToLen(mag, len, null)), 1);
+	else if (len < TOOM_COOK_SQUARE_THRESHOLD)
+	    return squareKaratsuba();
+	else if (len < NTT_SQUARE_THRESHOLD || 2*len > NTT_MAX_LENGTH)
+	    return squareToomCook3(parallelism);
+	else
+	    return multiplyNTT(this, this, parallelism);
+    }
+
+    /**
+     * 用 Karatsuba 算法返回 x * y。把每个操作数分成高低两半：x = xh*B + xl，y = yh*B + yl，
+     * 则 x*y = xh*yh*B**2 + ((xh+xl)*(yh+yl) - xh*yh - xl*yl)*B + xl*yl，
+     * 只需要三次半长的乘法而不是四次。
+     */
+    private static BigInteger multiplyKaratsuba(BigInteger x, BigInteger y) {
+	int half = (Math.max(x.mag.length, y.mag.length) + 1) / 2;
+
+	BigInteger xl = x.getLower(half);
+	BigInteger xh = x.getUpper(half);
+	BigInteger yl = y.getLower(half);
+	BigInteger yh = y.getUpper(half);
+
+	BigInteger p1 = xh.multiply(yh);
+	BigInteger p2 = xl.multiply(yl);
+	BigInteger p3 = xh.add(xl).multiply(yh.add(yl));
+
+	BigInteger result = p1.shiftLeft(32*half).add(p3.subtract(p1).subtract(p2))
+			      .shiftLeft(32*half).add(p2);
+	return (x.signum != y.signum ? result.negate() : result);
+    }
+
+    /**
+     * 用 Karatsuba 算法返回 this * this（参见 multiplyKaratsuba）。
+     */
+    private BigInteger squareKaratsuba() {
+	int half = (mag.length + 1) / 2;
+
+	BigInteger xl = getLower(half);
+	BigInteger xh = getUpper(half);
+
+	BigInteger xhs = xh.square();
+	BigInteger xls = xl.square();
+
+	return xhs.shiftLeft(32*half).add(xl.add(xh).square().subtract(xhs.add(xls)))
+		  .shiftLeft(32*half).add(xls);
+    }
+
+    /**
+     * 用 3 路 Toom-Cook 算法返回 a * b。每个操作数被分成三片，看作二次多项式在 B 处的值；
+     * 在 0、1、-1、2 和无穷远处求值并相乘（五次三分之一长度的乘法），再插值求出乘积多项式的系数。
+     * 插值序列取自 Marco Bodrato 的“Towards Optimal Toom-Cook Multiplication for Univariate
+     * and Multivariate Polynomials in Characteristic 2 and 0”。
+     */
+    private static BigInteger multiplyToomCook3(BigInteger a, BigInteger b,
+						int parallelism) {
+	int largest = Math.max(a.mag.length, b.mag.length);
+
+	/* k 是低位两片的大小（以 int 计），r 是最高一片的大小 */
+	int k = (largest + 2) / 3;
+	int r = largest - 2*k;
+
+	BigInteger a2 = a.getToomSlice(k, r, 0, largest);
+	BigInteger a1 = a.getToomSlice(k, r, 1, largest);
+	BigInteger a0 = a.getToomSlice(k, r, 2, largest);
+	BigInteger b2 = b.getToomSlice(k, r, 0, largest);
+	BigInteger b1 = b.getToomSlice(k, r, 1, largest);
+	BigInteger b0 = b.getToomSlice(k, r, 2, largest);
+
+	/* 在 0、-1、1、2 和无穷远处求值 */
+	BigInteger da1 = a2.add(a0);
+	BigInteger db1 = b2.add(b0);
+	BigInteger am1 = da1.subtract(a1);
+	BigInteger bm1 = db1.subtract(b1);
+	da1 = da1.add(a1);
+	db1 = db1.add(b1);
+	BigInteger da2 = da1.add(a2).shiftLeft(1).subtract(a0);
+	BigInteger db2 = db1.add(b2).shiftLeft(1).subtract(b0);
+
+	/* 逐点相乘；五个乘积互相独立 */
+	BigInteger v[] = multiplyAll(new BigInteger[] {a0, am1, da1, da2, a2},
+				     new BigInteger[] {b0, bm1, db1, db2, b2},
+				     (largest >= PARALLEL_THRESHOLD ? parallelism : 1));
+
+	return toomCook3Interpolate(v[0], v[2], v[1], v[3], v[4], 32*k,
+				    a.signum != b.signum);
+    }
+
+    /**
+     * 用 3 路 Toom-Cook 算法返回 this * this（参见 multiplyToomCook3）。
+     */
+    private BigInteger squareToomCook3(int parallelism) {
+	int len = mag.length;
+	int k = (len + 2) / 3;
+	int r = len - 2*k;
+
+	BigInteger a2 = getToomSlice(k, r, 0, len);
+	BigInteger a1 = getToomSlice(k, r, 1, len);
+	BigInteger a0 = getToomSlice(k, r, 2, len);
+
+	BigInteger da1 = a2.add(a0);
+	BigInteger am1 = da1.subtract(a1);
+	da1 = da1.add(a1);
+	BigInteger da2 = da1.add(a2).shiftLeft(1).subtract(a0);
+
+	/* 两个数组相同，multiplyAll 计算的是平方 */
+	BigInteger points[] = {a0, am1, da1, da2, a2};
+	BigInteger v[] = multiplyAll(points, points,
+				     (len >= PARALLEL_THRESHOLD ? parallelism : 1));
+
+	return toomCook3Interpolate(v[0], v[2], v[1], v[3], v[4], 32*k, false);
+    }
+
+    /**
+     * 由乘积多项式在 0、1、-1、2 和无穷远处的值插值出系数，并按每片 shift 位组合出结果。
+     * 如果 negate 为 true，则返回结果的相反数。
+     */
+    private static BigInteger toomCook3Interpolate(BigInteger v0, BigInteger v1,
+				BigInteger vm1, BigInteger v2, BigInteger vinf,
+				int shift, boolean negate) {
+	/* 需要两次除以二和一次（精确的）除以三 */
+	BigInteger t2 = v2.subtract(vm1).exactDivideBy3();
+	BigInteger tm1 = v1.subtract(vm1).shiftRight(1);
+	BigInteger t1 = v1.subtract(v0);
+	t2 = t2.subtract(t1).shiftRight(1);
+	t1 = t1.subtract(tm1).subtract(vinf);
+	t2 = t2.subtract(vinf.shiftLeft(1));
+	tm1 = tm1.subtract(t2);
+
+	BigInteger result = vinf.shiftLeft(shift).add(t2).shiftLeft(shift).add(t1)
+				.shiftLeft(shift).add(tm1).shiftLeft(shift).add(v0);
+	return (negate ? result.negate() : result);
+    }
+
+    /*
+     * 带 parallelism 参数的方法只在操作数至少有 PARALLEL_THRESHOLD 个 int 时才把互相独立的子计算
+     * 分给其他线程，更小的操作数创建线程的开销超过收益。默认值可以用系统属性
+     * java.math.BigInteger.parallelThreshold 调整。
+     */
+    private final static int PARALLEL_THRESHOLD = parallelThreshold();
+
+    private static int parallelThreshold() {
+	try {
+	    String threshold =
+		System.getProperty("java.math.BigInteger.parallelThreshold");
+	    if (threshold != null)
+		return Math.max(Integer.parseInt(threshold), 1);
+	} catch (Exception e) {
+	}
+	return 2048;
+    }
+
+    /**
+     * 带 parallelism 参数的方法在另一个线程中执行的一段计算。子类在 compute 中完成工作；
+     * compute 抛出的任何异常或错误（包括 OutOfMemoryError 和 StackOverflowError）都会被记录下来，
+     * 由 finish 在调用线程中原样重新抛出，所以调用者不会拿到只算了一部分的结果。
+     * Modulus 的批量 modPow 也使用它，所以是包内可见的。
+     */
+    static abstract class ForkedTask extends Thread {
+	private Throwable failure;
+
+	abstract void compute();
+
+	public void run() {
+	    try {
+		compute();
+	    } catch (Throwable e) {
+		failure = e;
+	    }
+	}
+
+	/**
+	 * 等待线程结束（也可以用于直接调用过 run 的、没有启动的线程）。等待中收到的中断在结束后恢复。
+	 * 如果 compute 抛出了异常或错误，则重新抛出它。
+	 */
+	void finish() {
+	    boolean interrupted = false;
+	    while (true) {
+		try {
+		    join();
+		    break;
+		} catch (InterruptedException e) {
+		    interrupted = true;
+		}
+	    }
+	    if (interrupted)
+		Thread.currentThread().interrupt();
+	    if (failure != null)
+		rethrow(failure);
+	}
+
+	/**
+	 * 原样抛出 t。compute 不声明受检异常，所以 t 只能是 RuntimeException 或 Error。
+	 */
+	private static void rethrow(Throwable t) {
+	    if (t instanceof RuntimeException)
+		throw (RuntimeException) t;
+	    if (t instanceof Error)
+		throw (Error) t;
+	    throw new RuntimeException(t.toString());
+	}
+
+	/**
+	 * 启动 tasks[1..]，在调用线程中运行 tasks[0]，然后等待所有任务结束。
+	 * 所有任务都结束后，才按下标顺序重新抛出第一个异常或错误。
+	 */
+	static void runAll(ForkedTask tasks[]) {
+	    for (int k=1; k<tasks.length; k++)
+		tasks[k].start();
+	    tasks[0].run();
+	    Throwable failure = null;
+	    for (int k=0; k<tasks.length; k++) {
+		try {
+		    tasks[k].finish();
+		} catch (Throwable e) {
+		    if (failure == null)
+			failure = e;
+		}
+	    }
+	    if (failure != null)
+		rethrow(failure);
+	}
+    }
+
+    /**
+     * 返回 results，其中 results[i] = x[i] * y[i]（x[i] 和 y[i] 是同一个对象时为平方）。
+     * parallelism > 1 时这些乘积最多分给 parallelism 个线程（包括调用线程）同时计算，
+     * 每个线程把分到的线程配额继续传给自己的乘法，所以递归中同时运行的线程不超过 parallelism 个。
+     */
+    private static BigInteger[] multiplyAll(BigInteger x[], BigInteger y[],
+					    int parallelism) {
+	BigInteger results[] = new BigInteger[x.length];
+	int numWorkers = Math.min(parallelism, x.length);
+	if (numWorkers <= 1) {
+	    for (int i=0; i<x.length; i++)
+		results[i] = x[i].multiply(y[i], parallelism);
+	    return results;
+	}
+
+	/* 第 k 个工作者计算下标为 k, k+numWorkers, ... 的乘积；第 0 个在调用线程中运行 */
+	ProductTask tasks[] = new ProductTask[numWorkers];
+	for (int k=0; k<numWorkers; k++) {
+	    int share = parallelism/numWorkers
+			+ (k < parallelism%numWorkers ? 1 : 0);
+	    tasks[k] = new ProductTask(x, y, results, k, numWorkers, share);
+	}
+	ForkedTask.runAll(tasks);
+	return results;
+    }
+
+    /**
+     * multiplyAll 的工作线程：按固定步长计算一部分乘积。
+     */
+    private static class ProductTask extends ForkedTask {
+	private BigInteger x[], y[], results[];
+	private int start, step, parallelism;
+
+	ProductTask(BigInteger x[], BigInteger y[], BigInteger results[],
+		    int start, int step, int parallelism) {
+	    this.x = x;
+	    this.y = y;
+	    this.results = results;
+	    this.start = start;
+	    this.step = step;
+	    this.parallelism = parallelism;
+	}
+
+	void compute() {
+	    for (int i=start; i<x.length; i+=step)
+		results[i] = x[i].multiply(y[i], parallelism);
+	}
+    }
+
+    /**
+     * 返回由幅度的低 n 个 int 组成的（非负）BigInteger。
+     */
+    private BigInteger getLower(int n) {
+	int len = mag.length;
+	if (len <= n)
+	    return abs();
+
+	int lowerInts[] = new int[n];
+	System.arraycopy(mag, len-n, lowerInts, 0, n);
+	return new BigInteger(trustedStripLeadingZeroInts(lowerInts), 1);
+    }
+
+    /**
+     * 返回由幅度中低 n 个 int 以上的部分组成的（非负）BigInteger。
+     */
+    private BigInteger getUpper(int n) {
+	int len = mag.length;
+	if (len <= n)
+	    return ZERO;
+
+	int upperInts[] = new int[len-n];
+	System.arraycopy(mag, 0, upperInts, 0, len-n);
+	return new BigInteger(trustedStripLeadingZeroInts(upperInts), 1);
+    }
+
+    /**
+     * 返回 Toom-Cook 乘法使用的一片幅度（非负）。把幅度看作前面补零到 fullsize 个 int，
+     * 第 0 片是最高的 upperSize 个 int，第 1、2 片依次是其后的各 lowerSize 个 int。
+     */
+    private BigInteger getToomSlice(int lowerSize, int upperSize, int slice,
+				    int fullsize) {
+	int len = mag.length;
+	int offset = fullsize - len;
+	int start, end;
+	if (slice == 0) {
+	    start = 0 - offset;
+	    end = upperSize - 1 - offset;
+	} else {
+	    start = upperSize + (slice-1)*lowerSize - offset;
+	    end = start + lowerSize - 1;
+	}
+
+	if (start < 0)
+	    start = 0;
+	if (end < 0)
+	    return ZERO;
+
+	int sliceSize = (end-start) + 1;
+	if (sliceSize <= 0)
+	    return ZERO;
+	if (start == 0 && sliceSize >= len)
+	    return abs();
+
+	int intSlice[] = new int[sliceSize];
+	System.arraycopy(mag, start, intSlice, 0, sliceSize);
+	return new BigInteger(trustedStripLeadingZeroInts(intSlice), 1);
+    }
+
+    /**
+     * 返回 this / 3。假设 this 能被 3 整除。从低位到高位逐个 int 地乘以 3 的模 2**32 逆元，
+     * 并跟踪借位（参见 Hacker's Delight 第 10 章的“精确除法”）。
+     */
+    private BigInteger exactDivideBy3() {
+	int len = mag.length;
+	int result[] = new int[len];
+	long borrow = 0;
+	for (int i=len-1; i>=0; i--) {
+	    long x = mag[i] & LONG_MASK;
+	    long w = x - borrow;
+	    borrow = (borrow > x ? 1 : 0);
+
+	    /* 0xAAAAAAAB 是 3 模 2**32 的逆元 */
+	    long q = (w * 0xAAAAAAABL) & LONG_MASK;
+	    if (q >= 0x55555556L) {
+		borrow++;
+		if (q >= 0xAAAAAAABL)
+		    borrow++;
+	    }
+	    result[i] = (int) q;
+	}
+	return new BigInteger(trustedStripLeadingZeroInts(result), signum);
+    }
+
+    /*
+     * 数论变换（NTT）乘法使用的三个素数 p = c * 2**k + 1 和它们的原根。
+     * 把幅度的每个 int 看作一个系数，乘积的每个系数不超过 min(xlen, ylen) * (2**32-1)**2 < 2**88
+     * （变换长度不超过 NTT_MAX_LENGTH = 2**24），而三个素数的乘积约为 2**89，
+     * 所以每个系数都能由它模三个素数的余数用中国剩余定理唯一恢复。更长的乘积交给 Toom-Cook 递归拆小。
+     */
+    private final static int NTT_PRIMES[] = {2013265921, 469762049, 754974721};
+    private final static int NTT_PRIMITIVE_ROOTS[] = {31, 3, 11};
+    private final static int NTT_MAX_LENGTH = 1 << 24;
+
+    /**
+     * 用数论变换返回 x * y（x == y 时只做一次正变换）。对每个素数分别求两个幅度的循环卷积，
+     * 再用中国剩余定理组合出乘积。三个素数的卷积互相独立，最多分给 parallelism 个线程计算（包括调用线程）。
+     */
+    private static BigInteger multiplyNTT(BigInteger x, BigInteger y,
+					  int parallelism) {
+	int xlen = x.mag.length, ylen = y.mag.length;
+	int n = 1;
+	while (n < xlen + ylen)
+	    n <<= 1;
+
+	int residues[][] = new int[NTT_PRIMES.length][];
+	int numWorkers = Math.min(Math.max(parallelism, 1), NTT_PRIMES.length);
+	NttWorker workers[] = new NttWorker[numWorkers];
+	for (int k=0; k<numWorkers; k++)
+	    workers[k] = new NttWorker(x.mag, (x == y ? null : y.mag), n,
+				       residues, k, numWorkers);
+	ForkedTask.runAll(workers);
+
+	int product[] = nttCombine(residues, xlen + ylen);
+	return new BigInteger(trustedStripLeadingZeroInts(product),
+			      x.signum * y.signum);
+    }
+
+    /**
+     * 数论变换乘法的工作线程：按固定步长计算一部分素数的卷积。
+     */
+    private static class NttWorker extends ForkedTask {
+	private int x[], y[], residues[][];
+	private int n, start, step;
+
+	NttWorker(int x[], int y[], int n, int residues[][], int start,
+		  int step) {
+	    this.x = x;
+	    this.y = y;
+	    this.n = n;
+	    this.residues = residues;
+	    this.start = start;
+	    this.step = step;
+	}
+
+	void compute() {
+	    for (int k=start; k<residues.length; k+=step)
+		residues[k] = nttConvolution(x, y, n, k);
+	}
+    }
+
+    /**
+     * 返回量级 x 和 y（y 为 null 时表示 x 自身）的小端系数的长度为 n 的循环卷积模 NTT_PRIMES[k]。
+     * 假设 n 是 2 的幂并且不小于 x.length + y.length。
+     *
+     * 正变换用 Gentleman-Sande（频域抽取）蝶形，输出按位反转顺序；逆变换用 Cooley-Tukey（时域抽取）蝶形，
+     * 接受位反转顺序的输入，所以两者之间不需要重排。所有模乘都是 Montgomery 乘法（R = 2**32），
+     * 数据保持普通形式，只有单位根和最后的缩放因子取 Montgomery 形式。
+     */
+    private static int[] nttConvolution(int x[], int y[], int n, int k) {
+	int p = NTT_PRIMES[k];
+	int inv = montgomeryInverse(p);
+	long r = (1L << 32) % p;
+	long r2 = r * r % p;
+
+	/* 单位根 w 和 w**-1 的幂表（Montgomery 形式），第 j 项为 w**j */
+	long w = modPowLong(NTT_PRIMITIVE_ROOTS[k], (p - 1) / n, p);
+	long wInv = modPowLong(w, n - 1, p);
+	int roots[] = new int[n/2], invRoots[] = new int[n/2];
+	long wm = montMultiply(w, r2, p, inv);
+	long wInvm = montMultiply(wInv, r2, p, inv);
+	roots[0] = invRoots[0] = (int) r;
+	for (int j=1; j<n/2; j++) {
+	    roots[j] = (int) montMultiply(roots[j-1], wm, p, inv);
+	    invRoots[j] = (int) montMultiply(invRoots[j-1], wInvm, p, inv);
+	}
+
+	int a[] = nttLoad(x, n, p);
+	nttForward(a, roots, p, inv);
+	if (y == null) {
+	    for (int i=0; i<n; i++)
+		a[i] = (int) montMultiply(a[i], a[i], p, inv);
+	} else {
+	    int b[] = nttLoad(y, n, p);
+	    nttForward(b, roots, p, inv);
+	    for (int i=0; i<n; i++)
+		a[i] = (int) montMultiply(a[i], b[i], p, inv);
+	}
+	nttInverse(a, invRoots, p, inv);
+
+	/* 逐点乘积带有 R**-1，逆变换少除了 n：乘以 n**-1 * R，它的 Montgomery 形式是 n**-1 * R**2 */
+	long scale = montMultiply(modPowLong(n, p - 2, p), r2, p, inv);
+	scale = montMultiply(scale, r2, p, inv);
+	for (int i=0; i<n; i++)
+	    a[i] = (int) montMultiply(a[i], scale, p, inv);
+	return a;
+    }
+
+    /**
+     * 返回长度为 n 的数组，第 i 项是量级 x 的第 i 个最低有效 int 模 p。
+     */
+    private static int[] nttLoad(int x[], int n, int p) {
+	int a[] = new int[n];
+	for (int i=0, j=x.length-1; j>=0; i++, j--)
+	    a[i] = (int) ((x[j] & LONG_MASK) % p);
+	return a;
+    }
+
+    /**
+     * 就地做长度为 a.length 的正变换，输出按位反转顺序。
+     */
+    private static void nttForward(int a[], int roots[], int p, int inv) {
+	int n = a.length;
+	for (int len=n, stride=1; len>=2; len>>>=1, stride<<=1) {
+	    int half = len >>> 1;
+	    for (int s=0; s<n; s+=len) {
+		for (int j=0; j<half; j++) {
+		    int u = a[s+j], v = a[s+j+half];
+		    int sum = u + v;		/* 可能超过 2**31 而溢出为负数 */
+		    a[s+j] = (sum >= p || sum < 0 ? sum - p : sum);
+		    int diff = u - v;
+		    a[s+j+half] = (int) montMultiply(diff < 0 ? diff + p : diff,
+						     roots[j*stride], p, inv);
+		}
+	    }
+	}
+    }
+
+    /**
+     * 就地做长度为 a.length 的逆变换（不除以长度），输入按位反转顺序。
+     */
+    private static void nttInverse(int a[], int invRoots[], int p, int inv) {
+	int n = a.length;
+	for (int len=2, stride=n/2; len<=n; len<<=1, stride>>>=1) {
+	    int half = len >>> 1;
+	    for (int s=0; s<n; s+=len) {
+		for (int j=0; j<half; j++) {
+		    int u = a[s+j];
+		    int v = (int) montMultiply(a[s+j+half], invRoots[j*stride],
+					       p, inv);
+		    int sum = u + v;
+		    a[s+j] = (sum >= p || sum < 0 ? sum - p : sum);
+		    int diff = u - v;
+		    a[s+j+half] = (diff < 0 ? diff + p : diff);
+		}
+	    }
+	}
+    }
+
+    /**
+     * 返回 a * b * 2**-32 mod p，假设 0 <= a, b < 2**31，p 是小于 2**31 的奇数，inv == -p**-1 mod 2**32。
+     * a * b < 2**62，加上 m * p < 2**63 之后不超过 64 位（按无符号数处理）。
+     */
+    private static long montMultiply(long a, long b, int p, int inv) {
+	long t = a * b;
+	long m = ((int) t * inv) & LONG_MASK;
+	long u = (t + m * p) >>> 32;
+	return (u >= p ? u - p : u);
+    }
+
+    /**
+     * 返回 b**e mod p，假设 0 <= b < p < 2**31 并且 e >= 0。
+     */
+    private static long modPowLong(long b, long e, int p) {
+	long result = 1;
+	b %= p;
+	while (e != 0) {
+	    if ((e & 1) != 0)
+		result = result * b % p;
+	    b = b * b % p;
+	    e >>>= 1;
+	}
+	return result;
+    }
+
+    /**
+     * 由三个素数的卷积余数组合出长度为 len 的乘积量级。
+     * 每个系数先用 Garner 算法化成混合进制 c = v0 + p0*(v1 + p1*v2)，再按 int 位置逐个累加进位。
+     */
+    private static int[] nttCombine(int residues[][], int len) {
+	long p0 = NTT_PRIMES[0], p1 = NTT_PRIMES[1], p2 = NTT_PRIMES[2];
+	long inv01 = modPowLong(p0, p1 - 2, (int) p1);		/* p0**-1 mod p1 */
+	long inv02 = modPowLong(p0, p2 - 2, (int) p2);		/* p0**-1 mod p2 */
+	long inv12 = modPowLong(p1, p2 - 2, (int) p2);		/* p1**-1 mod p2 */
+
+	int result[] = new int[len];
+	long acc0 = 0, acc1 = 0;
+	for (int i=0, j=len-1; j>=0; i++, j--) {
+	    long v0 = residues[0][i];
+	    long v1 = (residues[1][i] - v0 % p1 + p1) * inv01 % p1;
+	    long v2 = ((residues[2][i] - v0 % p2 + p2) * inv02 % p2 - v1 + p2)
+		      % p2 * inv12 % p2;
+
+	    /* c = v0 + p0 * t，t = v1 + p1 * v2 < 2**60 */
+	    long t = v1 + p1 * v2;
+	    long lo = p0 * (t & LONG_MASK) + v0;
+	    long hi = p0 * (t >>> 32) + (lo >>> 32);
+
+	    /* 系数的三个 int 分别加到第 i、i+1、i+2 个 int 上 */
+	    long sum = acc0 + (lo & LONG_MASK);
+	    result[j] = (int) sum;
+	    acc0 = acc1 + (hi & LONG_MASK) + (sum >>> 32);
+	    acc1 = hi >>> 32;
+	}
+	return result;
+    }
+
+    /*
+     * 除数至少有 BURNIKEL_ZIEGLER_THRESHOLD 个 int，并且被除数比除数至少长
+     * BURNIKEL_ZIEGLER_OFFSET 个 int 时，使用 Burnikel-Ziegler 递归除法；否则使用 Knuth 的算法 D。
+     * 递归除法内部的基本情况同样以 BURNIKEL_ZIEGLER_THRESHOLD 为界。
+     */
+    private final static int BURNIKEL_ZIEGLER_THRESHOLD = 80;
+    private final static int BURNIKEL_ZIEGLER_OFFSET = 40;
+
+    /**
+     * 返回一个含两个幅度的数组：[0] 是商 a / b，[1] 是余数 a % b。假设 b 不为零。
+     * 按操作数的大小选择除法算法。
+     */
+    private static int[][] divideMagnitude(int[] a, int[] b) {
+	if (b.length < BURNIKEL_ZIEGLER_THRESHOLD
+	    || a.length - b.length < BURNIKEL_ZIEGLER_OFFSET)
+	    return divideKnuth(a, b);
+
+	BigInteger qr[] = divideAndRemainderBurnikelZiegler(new BigInteger(a, 1),
+							   new BigInteger(b, 1));
+	int result[][] = new int[2][];
+	result[0] = qr[0].mag;
+	result[1] = qr[1].mag;
+	return result;
+    }
+
+    /**
+     * 返回一个含两个幅度的数组：[0] 是商 a / b，[1] 是余数 a % b。假设 b 不为零。
+     * 使用 Knuth 的算法 D（《计算机程序设计艺术》第 2 卷，4.3.1 节）。
+     */
+    private static int[][] divideKnuth(int[] a, int[] b) {
+	int result[][] = new int[2][];
+
+	/* 处理简单的情况 */
+	int cmp = intArrayCmp(a, b);
+	if (cmp < 0) {
+	    result[0] = new int[0];
+	    result[1] = a;
+	    return result;
+	} else if (cmp == 0) {
+	    result[0] = new int[] {1};
+	    result[1] = new int[0];
+	    return result;
+	}
+
+	/* 单 int 除数：逐个 int 地做短除法 */
+	if (b.length == 1) {
+	    long d = b[0] & LONG_MASK;
+	    long rem = 0;
+	    int q[] = new int[a.length];
+	    for (int i=0; i<a.length; i++) {
+		long n = (rem << 32) | (a[i] & LONG_MASK);
+		if (n >= 0) {
+		    q[i] = (int) (n / d);
+		    rem = n - (q[i] & LONG_MASK) * d;
+		} else {
+		    long qr = divWord(n, d);
+		    q[i] = (int) qr;
+		    rem = qr >>> 32;
+		}
+	    }
+	    result[0] = trustedStripLeadingZeroInts(q);
+	    result[1] = (rem == 0 ? new int[0] : new int[] {(int) rem});
+	    return result;
+	}
+
+	/* D1：规格化，使除数最高 int 的最高位为 1 */
+	int n = b.length, m = a.length - n;
+	int shift = 32 - bitLen(b[0]);
+	int v[] = new int[n];
+	int u[] = new int[a.length + 1];
+	if (shift == 0) {
+	    System.arraycopy(b, 0, v, 0, n);
+	    System.arraycopy(a, 0, u, 1, a.length);
+	} else {
+	    for (int i=0; i<n-1; i++)
+		v[i] = (b[i] << shift) | (b[i+1] >>> (32-shift));
+	    v[n-1] = b[n-1] << shift;
+	    u[0] = a[0] >>> (32-shift);
+	    for (int i=0; i<a.length-1; i++)
+		u[i+1] = (a[i] << shift) | (a[i+1] >>> (32-shift));
+	    u[a.length] = a[a.length-1] << shift;
+	}
+
+	long vh = v[0] & LONG_MASK, vl = v[1] & LONG_MASK;
+	int q[] = new int[m + 1];
+	for (int j=0; j<=m; j++) {
+	    /* D3：由 u 的前两个 int 和 v 的第一个 int 估计商 qhat */
+	    long uh = u[j] & LONG_MASK;
+	    long num = (uh << 32) | (u[j+1] & LONG_MASK);
+	    long qhat, rhat;
+	    if (uh == vh) {
+		qhat = LONG_MASK;
+		rhat = (u[j+1] & LONG_MASK) + vh;
+	    } else if (num >= 0) {
+		qhat = num / vh;
+		rhat = num - qhat * vh;
+	    } else {
+		long qr = divWord(num, vh);
+		qhat = qr & LONG_MASK;
+		rhat = qr >>> 32;
+	    }
+
+	    /* 用 v 的第二个 int 修正 qhat（最多两次） */
+	    while (rhat <= LONG_MASK
+		   && unsignedLongCompare(qhat * vl,
+				   (rhat << 32) | (u[j+2] & LONG_MASK)) > 0) {
+		qhat--;
+		rhat += vh;
+	    }
+
+	    /* D4：从 u[j..j+n] 中减去 qhat * v */
+	    long carry = 0;
+	    for (int i=n-1; i>=0; i--) {
+		long product = qhat * (v[i] & LONG_MASK) + carry;
+		long diff = (u[j+1+i] & LONG_MASK) - (product & LONG_MASK);
+		u[j+1+i] = (int) diff;
+		carry = (product >>> 32) + (diff < 0 ? 1 : 0);
+	    }
+	    long top = (u[j] & LONG_MASK) - carry;
+	    u[j] = (int) top;
+
+	    /* D5、D6：如果减多了（这种情况极少发生），就把 v 加回去 */
+	    if (top < 0) {
+		qhat--;
+		long sum = 0;
+		for (int i=n-1; i>=0; i--) {
+		    sum = (u[j+1+i] & LONG_MASK) + (v[i] & LONG_MASK) + (sum >>> 32);
+		    u[j+1+i] = (int) sum;
+		}
+		u[j] += (int) (sum >>> 32);
+	    }
+	    q[j] = (int) qhat;
+	}
+
+	/* D8：余数是 u 的低 n 个 int，需要去除规格化时的移位 */
+	int r[] = new int[n];
+	if (shift == 0) {
+	    System.arraycopy(u, m+1, r, 0, n);
+	} else {
+	    for (int i=n-1; i>0; i--)
+		r[i] = (u[m+1+i] >>> shift) | (u[m+i] << (32-shift));
+	    r[0] = u[m+1] >>> shift;
+	}
+
+	result[0] = trustedStripLeadingZeroInts(q);
+	result[1] = trustedStripLeadingZeroInts(r);
+	return result;
+    }
+
+    /**
+     * 用 Burnikel-Ziegler 算法返回 {a / b, a % b}，其中 a >= 0，b > 0。
+     * 参见 Christoph Burnikel 和 Joachim Ziegler 的“Fast Recursive Division”
+     * （MPI-I-98-1-022）。把 b 左移到恰好 n 个 int（n 是 2 的幂乘以一个不超过阈值的数），
+     * 把 a 按 n 个 int 分块，然后像“学校”除法那样逐块地用 divide2n1n 求商。
+     */
+    private static BigInteger[] divideAndRemainderBurnikelZiegler(BigInteger a,
+								  BigInteger b) {
+	/* 第 1、2 步：m 是使 m*BURNIKEL_ZIEGLER_THRESHOLD > s 的最小的 2 的幂，n 是块长 */
+	int s = b.mag.length;
+	int m = 1 << bitLen(s / BURNIKEL_ZIEGLER_THRESHOLD);
+	int j = (s + m - 1) / m;
+	int n = j * m;
+	int n32 = 32 * n;
+
+	/* 第 3、4 步：规格化，使 b 恰好占满 n 个 int，a 也移动同样的位数 */
+	int sigma = Math.max(0, n32 - b.bitLength());
+	BigInteger bShifted = b.shiftLeft(sigma);
+	BigInteger aShifted = a.shiftLeft(sigma);
+
+	/* 第 5 步：t 是容纳 a 并多留一位所需的块数 */
+	int t = (aShifted.bitLength() + n32) / n32;
+	if (t < 2)
+	    t = 2;
+
+	/* 第 6 至 8 步：z 从 a 的最高两块开始，每次用 divide2n1n 求出一块商 */
+	BigInteger z = aShifted.shiftRight((t-2) * n32);
+	BigInteger q = ZERO;
+	BigInteger qr[];
+	for (int i=t-2; i>0; i--) {
+	    qr = divide2n1n(z, bShifted);
+	    q = q.shiftLeft(n32).add(qr[0]);
+	    z = qr[1].shiftLeft(n32).add(aShifted.getBlock(i-1, n));
+	}
+	qr = divide2n1n(z, bShifted);
+	qr[0] = q.shiftLeft(n32).add(qr[0]);
+
+	/* 第 9 步：a 和 b 都被移动过，把余数移回来 */
+	qr[1] = qr[1].shiftRight(sigma);
+	return qr;
+    }
+
+    /**
+     * 返回 {a / b, a % b}，其中 b 恰好有 n 个 int 并且最高位为 1，0 <= a < b * 2**(32*n)。
+     * 这是 Burnikel-Ziegler 论文中的算法 D2n/1n。
+     */
+    private static BigInteger[] divide2n1n(BigInteger a, BigInteger b) {
+	int n = b.mag.length;
+
+	/* 第 1 步：基本情况 */
+	if (n%2 != 0 || n < BURNIKEL_ZIEGLER_THRESHOLD) {
+	    int qr[][] = divideKnuth(a.mag, b.mag);
+	    BigInteger result[] = new BigInteger[2];
+	    result[0] = new BigInteger(qr[0], 1);
+	    result[1] = new BigInteger(qr[1], 1);
+	    return result;
+	}
+
+	/* 第 2 至 5 步：把 a 看作 [a1,a2,a3,a4]，先用 [a1,a2,a3] 求出商的高半部分，再求低半部分 */
+	int half = n/2;
+	BigInteger qr1[] = divide3n2n(a.shiftRight(32*half), b);
+	BigInteger qr2[] = divide3n2n(qr1[1].shiftLeft(32*half)
+					    .add(a.getLower(half)), b);
+	qr2[0] = qr1[0].shiftLeft(32*half).add(qr2[0]);
+	return qr2;
+    }
+
+    /**
+     * 返回 {a / b, a % b}，其中 b 恰好有 2*h 个 int 并且最高位为 1，0 <= a < b * 2**(32*h)。
+     * 这是 Burnikel-Ziegler 论文中的算法 D3n/2n。
+     */
+    private static BigInteger[] divide3n2n(BigInteger a, BigInteger b) {
+	int h = b.mag.length / 2;
+
+	/* 第 1、2 步：把 a 看作 [a1,a2,a3]，b 看作 [b1,b2]，每块 h 个 int */
+	BigInteger a12 = a.shiftRight(32*h);
+	BigInteger a1 = a.shiftRight(64*h);
+	BigInteger b1 = b.getUpper(h);
+	BigInteger b2 = b.getLower(h);
+
+	/* 第 3 步：由 [a1,a2] / b1 估计商 q，并求出相应的余数 r */
+	BigInteger q, r;
+	if (a1.compareTo(b1) < 0) {
+	    BigInteger qr[] = divide2n1n(a12, b1);
+	    q = qr[0];
+	    r = qr[1];
+	} else {
+	    /* q = 2**(32*h) - 1，r = [a1,a2] - q*b1 */
+	    q = ONE.shiftLeft(32*h).subtract(ONE);
+	    r = a12.subtract(b1.shiftLeft(32*h)).add(b1);
+	}
+
+	/* 第 4 至 6 步：r = [r,a3] - q*b2；q 最多大 2，所以 r 最多需要加回两次 b */
+	r = r.shiftLeft(32*h).add(a.getLower(h)).subtract(q.multiply(b2));
+	while (r.signum < 0) {
+	    r = r.add(b);
+	    q = q.subtract(ONE);
+	}
+
+	BigInteger result[] = new BigInteger[2];
+	result[0] = q;
+	result[1] = r;
+	return result;
+    }
+
+    /**
+     * 返回幅度中（从最低有效 int 数起的）第 index 块，每块 n 个 int，作为非负的 BigInteger。
+     */
+    private BigInteger getBlock(int index, int n) {
+	int len = mag.length;
+	int blockStart = index * n;
+	if (blockStart >= len)
+	    return ZERO;
+
+	int blockEnd = Math.min(len, blockStart + n);
+	int blockInts[] = new int[blockEnd - blockStart];
+	System.arraycopy(mag, len - blockEnd, blockInts, 0, blockInts.length);
+	return new BigInteger(trustedStripLeadingZeroInts(blockInts), 1);
+    }
+
+    /**
+     * 用 d 除无符号的 64 位数 n，假设 n 的高 32 位小于 d 并且 d >= 2**31。
+     * 返回值的高 32 位是余数，低 32 位是商。
+     */
+    private static long divWord(long n, long d) {
+	/* 先求近似的商，再修正 */
+	long q = (n >>> 1) / (d >>> 1);
+	long r = n - q*d;
+	while (r < 0) {
+	    r += d;
+	    q--;
+	}
+	while (r >= d) {
+	    r -= d;
+	    q++;
+	}
+	return (r << 32) | (q & LONG_MASK);
+    }
+
+    /*
+     * 返回 -1、0 或 +1，因为（作为无符号数的）one 是 <、== 或 > two。
+     */
+    private static int unsignedLongCompare(long one, long two) {
+	one += Long.MIN_VALUE;
+	two += Long.MIN_VALUE;
+	return (one < two ? -1 : (one == two ? 0 : 1));
+    }
+
     /*
      * 以下两个数组用于快速字符串转换。两者都由基数索引。
-     * 第一个是给定基数的位数，它可以适合 Java long 而不会“变为负数”，即最大整数 n 使得 基数 ** n < 2 ** 63。
-     * 第二个是撕裂每个数字的“长基数”成“长数字”，每个数字由digitsPerLong中对应元素的位数组成（longRadix[i] = i ** digitPerLong[i]）。
+     * 第一个是给定基数的位数，它可以适合 Java int 而不会“变为负数”，即最大整数 n 使得 基数 ** n < 2 ** 31。
+     * 第二个是撕裂每个数字的“整数基数”成“整数数字”，每个数字由digitsPerInt中对应元素的位数组成（intRadix[i] = i ** digitsPerInt[i]）。
      * 两个数组在它们的 0 和 1 元素中都有无意义的值，因为没有使用基数 0 和 1。
      */
 
-    private static int digitsPerLong[] = {0, 0,
-	62, 39, 31, 27, 24, 22, 20, 19, 18, 18, 17, 17, 16, 16, 15, 15, 15, 14,
-	14, 14, 14, 13, 13, 13, 13, 13, 13, 12, 12, 12, 12, 12, 12, 12, 12};
-
-    private static BigInteger longRadix[] = {null, null,
-        valueOf(0x4000000000000000L), valueOf(0x383d9170b85ff80bL),
-	valueOf(0x4000000000000000L), valueOf(0x6765c793fa10079dL),
-	valueOf(0x41c21cb8e1000000L), valueOf(0x3642798750226111L),
-        valueOf(0x1000000000000000L), valueOf(0x12bf307ae81ffd59L),
-	valueOf( 0xde0b6b3a7640000L), valueOf(0x4d28cb56c33fa539L),
-	valueOf(0x1eca170c00000000L), valueOf(0x780c7372621bd74dL),
-	valueOf(0x1e39a5057d810000L), valueOf(0x5b27ac993df97701L),
-	valueOf(0x1000000000000000L), valueOf(0x27b95e997e21d9f1L),
-	valueOf(0x5da0e1e53c5c8000L), valueOf( 0xb16a458ef403f19L),
-	valueOf(0x16bcc41e90000000L), valueOf(0x2d04b7fdd9c0ef49L),
-	valueOf(0x5658597bcaa24000L), valueOf( 0x6feb266931a75b7L),
-	valueOf( 0xc29e98000000000L), valueOf(0x14adf4b7320334b9L),
-	valueOf(0x226ed36478bfa000L), valueOf(0x383d9170b85ff80bL),
-	valueOf(0x5a3c23e39c000000L), valueOf( 0x4e900abb53e6b71L),
-	valueOf( 0x7600ec618141000L), valueOf( 0xaee5720ee830681L),
-	valueOf(0x1000000000000000L), valueOf(0x172588ad4f5f0981L),
-	valueOf(0x211e44f7d02c1000L), valueOf(0x2ee56725f06e5c71L),
-	valueOf(0x41c21cb8e1000000L)};
+    private static int digitsPerInt[] = {0, 0,
+	30, 19, 15, 13, 11, 11, 10, 9, 9, 8, 8, 8, 8, 7, 7, 7, 7, 7, 7, 7,
+	6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 5};
+
+    private static int intRadix[] = {0, 0,
+	0x40000000, 0x4546b3db, 0x40000000, 0x48c27395, 0x159fd800,
+	0x75db9c97, 0x40000000, 0x17179149, 0x3b9aca00, 0x0cc6db61,
+	0x19a10000, 0x309f1021, 0x57f6c100, 0x0a2f1b6f, 0x10000000,
+	0x18754571, 0x247dbc80, 0x3547667b, 0x4c4b4000, 0x6b5a6e1d,
+	0x06c20a40, 0x08d2d931, 0x0b640000, 0x0e8d4a51, 0x1269ae40,
+	0x17179149, 0x1cb91000, 0x23744899, 0x2b73a840, 0x34e63b41,
+	0x40000000, 0x4cfa3cc1, 0x5c13d840, 0x6d91b519, 0x039aa400};
+
+    /*
+     * 量级不超过这么多个 int 时，进制转换使用逐组的二次算法；更大时使用分治算法。
+     */
+    private static final int SCHOENHAGE_BASE_CONVERSION_THRESHOLD = 20;
+
+    /* ln(2)，用于按位数估计数字个数。 */
+    private static final double LOG_TWO = Math.log(2.0);
+
 
-
     /**
      * 这些例程提供对 BigInteger 的二进制补码表示的访问。
      */
@@ -1220,70 +3751,39 @@ public class BigInteger extends Number {
 	return bitLength()/8 + 1;
     }
 
-    /* Returns sign bit */
-    private int signBit() {
-	return (signum < 0 ? 1 : 0);
+    /* Returns an int of sign bits */
+    private int signInt() {
+	return (signum < 0 ? -1 : 0);
     }
 
-    /* Returns a byte of sign bits */
-    private byte signByte() {
-	return (byte) (signum < 0 ? -1 : 0);
+    /**
+     * 返回二进制补码表示的 int 长度，包括至少一个符号位的空间。
+     */
+    private int intLength() {
+	return (bitLength() >>> 5) + 1;
     }
 
     /**
-     * 返回小端二进制补码表示的指定字节（字节 0 是 LSB）。字节数可以任意高（值在逻辑上前面有无限多个符号字节）。
+     * 返回小端二进制补码表示的指定 int（int 0 是最低有效 int）。int 序号可以任意高（值在逻辑上前面有无限多个符号 int）。
      */
-    private byte getByte(int n) {
-	if (n >= magnitude.length)
-	    return signByte();
+    private int getInt(int n) {
+	if (n >= mag.length)
+	    return signInt();
 
-	byte magByte = magnitude[magnitude.length-n-1];
+	int magInt = mag[mag.length-n-1];
 
-	return (byte) (signum >= 0 ? magByte :
-		       (n <= firstNonzeroByteNum() ? -magByte : ~magByte));
+	return (signum >= 0 ? magInt :
+		(n <= firstNonzeroIntNum() ? -magInt : ~magInt));
     }
 
     /**
-     * 返回幅度的小端二进制表示中第一个非零字节的索引（字节 0 是 LSB）。如果幅度为零，则返回值未定义。
+     * 返回幅度的小端表示中第一个非零 int 的索引（int 0 是最低有效 int）。如果幅度为零，则返回值未定义。
      */
-
-     private int firstNonzeroByteNum() {
-	/*
-	 * 第一次执行此方法时初始化 bitCount 字段。该方法依赖于 int 修改的原子性；如果没有这个保证，它就必须同步。
-	 */
-	if (firstNonzeroByteNum == -2) {
-	    /* 搜索第一个非零字节 */
-	    int i;
-	    for (i=magnitude.length-1; i>=0 && magnitude[i]==0; i--)
-		;
-	    firstNonzeroByteNum = magnitude.length-i-1;
-	}
-	return firstNonzeroByteNum;
+    private int firstNonzeroIntNum() {
+	return getLowestSetBit() >>> 5;
     }
 
-
-    /**
-     * Colin Plumb 的大正整数包的本机方法包装器。
-	 * 这些包装器中的每一个（除了plumbInit）的行为如下：
-	 *  1) 将输入参数从java 字节数组转换为plumbNums。
-	 *  2) 执行请求的计算。
-	 *  3) 将结果转换为 Java 字节数组。 （减法运算将其结果转换为 BigInteger，因为它的结果实际上是有符号的。）
-	 *  4) 释放所有的 plumbNums。
-	 *  5) 返回生成的 Java 数组（或者，在减法的情况下，返回 BigInteger）。
-     */
-
-    private static native void plumbInit();
-    private static native byte[] plumbAdd(byte[] a, byte[] b);
-    private static native BigInteger plumbSubtract(byte[] a, byte[] b);
-    private static native byte[] plumbMultiply(byte[] a, byte[] b);
-    private static native byte[] plumbDivide(byte[] a, byte[] b);
-    private static native byte[] plumbRemainder(byte[] a, byte[] b);
-    private static native byte[][] plumbDivideAndRemainder(byte[] a, byte[] b);
-    private static native byte[] plumbGcd(byte[] a, byte[] b);
-    private static native byte[] plumbModPow(byte[] a, byte[] b, byte[] m);
-    private static native byte[] plumbModInverse(byte[] a, byte[] m);
-    private static native byte[] plumbSquare(byte[] a);
-    private static native byte[] plumbGeneratePrime(byte[] a);
+
 
     /** 用 JDK 1.1 中的 serialVersionUID。互操作性 */
     private static final long serialVersionUID = -8287574255936472291L;
@@ -1296,14 +3796,15 @@ public class BigInteger extends Number {
         // Read in all fields
 	s.defaultReadObject();
 
-        // 防御性复制大小以确保不变性
-        magnitude = (byte[]) magnitude.clone();
+	// 把字节幅度转换成 int 幅度（这同时也是防御性复制，以确保不变性）
+	mag = stripLeadingZeroBytes(magnitude);
+	magnitude = null;
 
         // Validate signum（验证代码）
 	if (signum < -1 || signum > 1)
 	    throw new java.io.StreamCorruptedException(
                         "BigInteger: Invalid signum value");
-	if ((magnitude.length==0) != (signum==0))
+	if ((mag.length==0) != (signum==0))
 	    throw new java.io.StreamCorruptedException(
                         "BigInteger: signum-magnitude mismatch");
 
@@ -1311,4 +3812,26 @@ public class BigInteger extends Number {
         bitCount = bitLength = -1;
         lowestSetBit = firstNonzeroByteNum = -2;
     }
+
+    /**
+     * 把这个 BigInteger 写入流中（即序列化它）。流中的幅度仍然是大端字节数组，与 JDK 1.1 的格式相同。
+     */
+    private synchronized void writeObject(java.io.ObjectOutputStream s)
+	throws java.io.IOException {
+	magnitude = magSerializedForm();
+	s.defaultWriteObject();
+	magnitude = null;
+    }
+
+    /**
+     * 返回幅度的最小（无前导零字节）大端字节数组。
+     */
+    private byte[] magSerializedForm() {
+	int len = (mag.length == 0 ? 0
+		   : (32*(mag.length-1) + bitLen(mag[0]) + 7)/8);
+	byte result[] = new byte[len];
+	for (int i=0; i<len; i++)
+	    result[len-1-i] = (byte) (mag[mag.length-1-i/4] >>> (8*(i%4)));
+	return result;
+    }
 }
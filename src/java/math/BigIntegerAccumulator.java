@@ -0,0 +1,423 @@
+/*
+ * @(#)BigIntegerAccumulator.java	1.1 2026/10/18
+ *
+ * 版权所有 2002年 Sun Microsystems，Inc.保留所有权利。
+ * SUN 所有者/机密。使用受许可条款约束。
+ */
+
+package java.math;
+
+/**
+ * 可变的任意精度整数累加器。
+ *
+ * BigInteger 是不可变的，每次 add 或 multiply 都会产生一个新对象和一个新数组；
+ * 对一大列数求和时，这些中间对象的分配和回收往往比运算本身还贵。
+ * BigIntegerAccumulator 把值保存在一个可增长的 int 缓冲区中，所有运算都就地修改它，
+ * 缓冲区只在需要更多空间时才扩大；需要结果时用 toBigInteger 取得一个不可变的快照。
+ *
+ * 运算的语义与 BigInteger 的同名运算相同（包括负数的右移向负无穷取整）。
+ * 这个类不是线程安全的；多个线程共用一个累加器时，必须由调用者加锁。
+ *
+ * @see BigInteger
+ * @version 	1.1, 2026/10/18
+ */
+public final class BigIntegerAccumulator {
+    private final static long LONG_MASK = 0xffffffffL;
+
+    /*
+     * 量级以 int 为单位按小端顺序存放（words[0] 是最低有效 int），有效长度为 length，
+     * words[length-1] 不为零；words 中 length 之后的元素始终为零。零用 sign == 0 和 length == 0 表示。
+     */
+    private int words[];
+    private int length;
+    private int sign;
+
+    /* 把 long 或乘积转换成大端量级时复用的缓冲区 */
+    private int longWords[] = new int[2];
+    private int product[];
+
+    // 构造器
+
+    /**
+     * 构造一个值为零的累加器。
+     */
+    public BigIntegerAccumulator() {
+	words = new int[4];
+    }
+
+    /**
+     * 构造一个初值为 val 的累加器。
+     */
+    public BigIntegerAccumulator(BigInteger val) {
+	this();
+	add(val);
+    }
+
+    /**
+     * 构造一个初值为 val 的累加器。
+     */
+    public BigIntegerAccumulator(long val) {
+	this();
+	add(val);
+    }
+
+    // 算术运算
+
+    /**
+     * this += val。
+     */
+    public BigIntegerAccumulator add(BigInteger val) {
+	addSigned(val.mag, val.mag.length, val.signum());
+	return this;
+    }
+
+    /**
+     * this += val。
+     */
+    public BigIntegerAccumulator add(long val) {
+	addSigned(longWords, setLongWords(val), signum(val));
+	return this;
+    }
+
+    /**
+     * this -= val。
+     */
+    public BigIntegerAccumulator subtract(BigInteger val) {
+	addSigned(val.mag, val.mag.length, -val.signum());
+	return this;
+    }
+
+    /**
+     * this -= val。
+     */
+    public BigIntegerAccumulator subtract(long val) {
+	addSigned(longWords, setLongWords(val), -signum(val));
+	return this;
+    }
+
+    /**
+     * this *= val。
+     */
+    public BigIntegerAccumulator multiply(int val) {
+	return multiply((long) val);
+    }
+
+    /**
+     * this *= val。
+     */
+    public BigIntegerAccumulator multiply(long val) {
+	if (val == 0 || sign == 0) {
+	    clear();
+	    return this;
+	}
+	if (val < 0)
+	    sign = -sign;
+
+	/* |val| 按无符号数处理，这样 Long.MIN_VALUE 也是正确的 */
+	long m = (val < 0 ? -val : val);
+	long lo = m & LONG_MASK;
+	long hi = m >>> 32;
+	ensureCapacity(length + 2);
+	if (hi == 0) {
+	    long carry = 0;
+	    for (int i=0; i<length; i++) {
+		long p = (words[i] & LONG_MASK) * lo + carry;
+		words[i] = (int) p;
+		carry = p >>> 32;
+	    }
+	    words[length] = (int) carry;
+	} else {
+	    /* 第 i 个 int 等于 words[i]*lo + words[i-1]*hi 加上进位；prev 保存尚未被覆盖的 words[i-1] */
+	    long carry = 0;
+	    long prev = 0;
+	    for (int i=0; i<length+2; i++) {
+		long w = words[i] & LONG_MASK;
+		long p1 = w * lo;
+		long p2 = prev * hi;
+		long sum = (p1 & LONG_MASK) + (p2 & LONG_MASK) + (carry & LONG_MASK);
+		words[i] = (int) sum;
+		carry = (p1 >>> 32) + (p2 >>> 32) + (carry >>> 32) + (sum >>> 32);
+		prev = w;
+	    }
+	}
+	normalize(length + 2);
+	return this;
+    }
+
+    /**
+     * this += x * y（乘积累加）。较短的乘积写入一个复用的缓冲区，不产生中间的 BigInteger。
+     */
+    public BigIntegerAccumulator addProduct(BigInteger x, BigInteger y) {
+	int productSign = x.signum() * y.signum();
+	if (productSign == 0)
+	    return this;
+
+	int xlen = x.mag.length, ylen = y.mag.length;
+	if (xlen >= BigInteger.KARATSUBA_THRESHOLD
+	    && ylen >= BigInteger.KARATSUBA_THRESHOLD) {
+	    /* 这么大的乘积用 BigInteger 的快速乘法，分配的代价可以忽略 */
+	    BigInteger p = x.multiply(y);
+	    addSigned(p.mag, p.mag.length, productSign);
+	} else {
+	    product = BigInteger.multiplyToLen(x.mag, xlen, y.mag, ylen, product);
+	    addSigned(product, xlen + ylen, productSign);
+	}
+	return this;
+    }
+
+    /**
+     * this += x * y（乘积累加）。乘积写入一个复用的缓冲区，不产生中间的 BigInteger。
+     */
+    public BigIntegerAccumulator addProduct(BigInteger x, long y) {
+	int productSign = x.signum() * signum(y);
+	if (productSign == 0)
+	    return this;
+
+	int xlen = x.mag.length;
+	int ylen = setLongWords(y);
+	product = BigInteger.multiplyToLen(x.mag, xlen, longWords, ylen, product);
+	addSigned(product, xlen + ylen, productSign);
+	return this;
+    }
+
+    /**
+     * this = this << n。n 为负时右移。
+     */
+    public BigIntegerAccumulator shiftLeft(int n) {
+	if (n < 0)
+	    return shiftRight(-n);
+	if (n == 0 || sign == 0)
+	    return this;
+
+	int nInts = n >>> 5;
+	int nBits = n & 31;
+	ensureCapacity(length + nInts + 1);
+	if (nBits == 0) {
+	    for (int i=length-1; i>=0; i--)
+		words[i + nInts] = words[i];
+	} else {
+	    words[length + nInts] = words[length-1] >>> (32 - nBits);
+	    for (int i=length-1; i>0; i--)
+		words[i + nInts] = (words[i] << nBits)
+				   | (words[i-1] >>> (32 - nBits));
+	    words[nInts] = words[0] << nBits;
+	}
+	for (int i=0; i<nInts; i++)
+	    words[i] = 0;
+	normalize(length + nInts + 1);
+	return this;
+    }
+
+    /**
+     * this = this >> n，执行符号扩展（即向负无穷取整，与 BigInteger.shiftRight 相同）。n 为负时左移。
+     */
+    public BigIntegerAccumulator shiftRight(int n) {
+	if (n < 0)
+	    return shiftLeft(-n);
+	if (n == 0 || sign == 0)
+	    return this;
+
+	int s = sign;
+	int nInts = n >>> 5;
+	int nBits = n & 31;
+	if (nInts >= length) {
+	    /* 所有的位都被移出：非负数得零，负数得 -1 */
+	    clear();
+	    if (s < 0)
+		add(-1L);
+	    return this;
+	}
+
+	/* 负数在移出了非零位时需要把量级加一 */
+	boolean lostBits = false;
+	if (sign < 0) {
+	    for (int i=0; i<nInts && !lostBits; i++)
+		lostBits = (words[i] != 0);
+	    if (nBits != 0 && (words[nInts] << (32 - nBits)) != 0)
+		lostBits = true;
+	}
+
+	int newLength = length - nInts;
+	if (nBits == 0) {
+	    for (int i=0; i<newLength; i++)
+		words[i] = words[i + nInts];
+	} else {
+	    for (int i=0; i<newLength-1; i++)
+		words[i] = (words[i + nInts] >>> nBits)
+			   | (words[i + nInts + 1] << (32 - nBits));
+	    words[newLength-1] = words[length-1] >>> nBits;
+	}
+	for (int i=newLength; i<length; i++)
+	    words[i] = 0;
+	normalize(newLength);
+
+	if (lostBits) {
+	    addMagnitude(longWords, setLongWords(1));
+	    sign = s;
+	}
+	return this;
+    }
+
+    /**
+     * 把累加器清零，保留已经分配的缓冲区。
+     */
+    public BigIntegerAccumulator clear() {
+	for (int i=0; i<length; i++)
+	    words[i] = 0;
+	length = 0;
+	sign = 0;
+	return this;
+    }
+
+    /**
+     * 返回累加器当前值的符号：-1、0 或 1。
+     */
+    public int signum() {
+	return sign;
+    }
+
+    /**
+     * 返回累加器当前值的一个不可变快照。之后对累加器的修改不影响返回的 BigInteger。
+     */
+    public BigInteger toBigInteger() {
+	int mag[] = new int[length];
+	for (int i=0; i<length; i++)
+	    mag[length-1-i] = words[i];
+	return new BigInteger(mag, sign);
+    }
+
+    /**
+     * 返回累加器当前值的十进制字符串表示形式。
+     */
+    public String toString() {
+	return toBigInteger().toString();
+    }
+
+    // 私有方法
+
+    /**
+     * this += srcSign * src，其中 src[0..srcLen-1] 是大端的量级（可以有前导零）。
+     */
+    private void addSigned(int src[], int srcLen, int srcSign) {
+	if (srcSign == 0)
+	    return;
+	if (sign == 0 || sign == srcSign) {
+	    addMagnitude(src, srcLen);
+	    sign = srcSign;
+	} else {
+	    subtractMagnitude(src, srcLen);
+	}
+    }
+
+    /**
+     * |this| += src。
+     */
+    private void addMagnitude(int src[], int srcLen) {
+	ensureCapacity(Math.max(length, srcLen) + 1);
+	long carry = 0;
+	int i = 0;
+	for (; i<srcLen; i++) {
+	    long sum = (words[i] & LONG_MASK) + (src[srcLen-1-i] & LONG_MASK)
+		       + carry;
+	    words[i] = (int) sum;
+	    carry = sum >>> 32;
+	}
+	for (; carry != 0; i++) {
+	    long sum = (words[i] & LONG_MASK) + carry;
+	    words[i] = (int) sum;
+	    carry = sum >>> 32;
+	}
+	normalize(Math.max(length, i));
+    }
+
+    /**
+     * |this| = ||this| - src|，src 较大时符号取反；两者相等时结果为零。
+     */
+    private void subtractMagnitude(int src[], int srcLen) {
+	/* 去掉 src 的前导零再比较 */
+	int start = 0;
+	while (start < srcLen && src[start] == 0)
+	    start++;
+	int len = srcLen - start;
+
+	int cmp = (length != len ? (length > len ? 1 : -1) : 0);
+	for (int i=length-1; cmp == 0 && i>=0; i--) {
+	    long a = words[i] & LONG_MASK;
+	    long b = src[srcLen-1-i] & LONG_MASK;
+	    if (a != b)
+		cmp = (a > b ? 1 : -1);
+	}
+	if (cmp == 0) {
+	    clear();
+	    return;
+	}
+
+	long borrow = 0;
+	if (cmp > 0) {		/* words -= src */
+	    int i = 0;
+	    for (; i<len; i++) {
+		long diff = (words[i] & LONG_MASK) - (src[srcLen-1-i] & LONG_MASK)
+			    + borrow;
+		words[i] = (int) diff;
+		borrow = diff >> 32;
+	    }
+	    for (; borrow != 0; i++) {
+		long diff = (words[i] & LONG_MASK) + borrow;
+		words[i] = (int) diff;
+		borrow = diff >> 32;
+	    }
+	    normalize(length);
+	} else {		/* words = src - words */
+	    ensureCapacity(len);
+	    for (int i=0; i<len; i++) {
+		long diff = (src[srcLen-1-i] & LONG_MASK) - (words[i] & LONG_MASK)
+			    + borrow;
+		words[i] = (int) diff;
+		borrow = diff >> 32;
+	    }
+	    normalize(len);
+	    sign = -sign;
+	}
+    }
+
+    /**
+     * 把 |val| 按大端顺序放进 longWords 的前面，返回所用的 int 数（1 或 2）。
+     */
+    private int setLongWords(long val) {
+	long m = (val < 0 ? -val : val);	/* Long.MIN_VALUE 按无符号数处理 */
+	int hi = (int) (m >>> 32);
+	if (hi == 0) {
+	    longWords[0] = (int) m;
+	    return 1;
+	}
+	longWords[0] = hi;
+	longWords[1] = (int) m;
+	return 2;
+    }
+
+    private static int signum(long val) {
+	return (val > 0 ? 1 : (val < 0 ? -1 : 0));
+    }
+
+    /**
+     * 保证 words 至少有 n 个 int，必要时按至少一倍的幅度扩大。
+     */
+    private void ensureCapacity(int n) {
+	if (n <= words.length)
+	    return;
+	int grown[] = new int[Math.max(n, 2*words.length)];
+	System.arraycopy(words, 0, grown, 0, length);
+	words = grown;
+    }
+
+    /**
+     * 从 words[len-1] 往下找到最高的非零 int 来确定 length；结果为零时符号也置零。
+     */
+    private void normalize(int len) {
+	while (len > 0 && words[len-1] == 0)
+	    len--;
+	length = len;
+	if (len == 0)
+	    sign = 0;
+    }
+}
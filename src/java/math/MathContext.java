@@ -0,0 +1,119 @@
+/*
+ * @(#)MathContext.java	1.1 2026/10/18
+ *
+ * 版权所有 2002年 Sun Microsystems，Inc.保留所有权利。
+ * SUN 所有者/机密。使用受许可条款约束。
+ */
+
+package java.math;
+
+/**
+ * BigDecimal 运算的精度和舍入模式。
+ *
+ * 精度是结果保留的有效十进制位数，0 表示不限精度（运算是精确的）。舍入模式是 BigDecimal 的舍入模式常量之一
+ * （BigDecimal.ROUND_UP 到 BigDecimal.ROUND_UNNECESSARY），在结果的位数超过精度时用于舍入。
+ * 在一长串运算中（例如复利或分期计算表）每一步都按固定的精度舍入，操作数的位数就不会无限增长。
+ *
+ * MathContext 是不可变的，可以被多个线程共享。
+ *
+ * @see BigDecimal#round
+ * @version 	1.1, 2026/10/18
+ */
+public final class MathContext {
+    /* 有效十进制位数，0 表示不限精度 */
+    private final int precision;
+
+    /* BigDecimal 的舍入模式常量 */
+    private final int roundingMode;
+
+    /**
+     * 不限精度的 MathContext，运算结果是精确的。
+     */
+    public static final MathContext UNLIMITED =
+	new MathContext(0, BigDecimal.ROUND_HALF_UP);
+
+    /**
+     * 7 位精度，舍入模式为 ROUND_HALF_EVEN（IEEE 754R decimal32 格式的精度）。
+     */
+    public static final MathContext DECIMAL32 =
+	new MathContext(7, BigDecimal.ROUND_HALF_EVEN);
+
+    /**
+     * 16 位精度，舍入模式为 ROUND_HALF_EVEN（IEEE 754R decimal64 格式的精度）。
+     */
+    public static final MathContext DECIMAL64 =
+	new MathContext(16, BigDecimal.ROUND_HALF_EVEN);
+
+    /**
+     * 34 位精度，舍入模式为 ROUND_HALF_EVEN（IEEE 754R decimal128 格式的精度）。
+     */
+    public static final MathContext DECIMAL128 =
+	new MathContext(34, BigDecimal.ROUND_HALF_EVEN);
+
+    /**
+     * 构造指定精度、舍入模式为 ROUND_HALF_UP 的 MathContext。如果 precision < 0，则抛出 IllegalArgumentException。
+     */
+    public MathContext(int precision) {
+	this(precision, BigDecimal.ROUND_HALF_UP);
+    }
+
+    /**
+     * 构造指定精度和舍入模式的 MathContext。
+     * 如果 precision < 0，或者 roundingMode 不表示有效的舍入模式，则抛出 IllegalArgumentException。
+     */
+    public MathContext(int precision, int roundingMode) {
+	if (precision < 0)
+	    throw new IllegalArgumentException("Negative precision");
+	if (roundingMode < BigDecimal.ROUND_UP ||
+	    roundingMode > BigDecimal.ROUND_UNNECESSARY)
+	    throw new IllegalArgumentException("Invalid rounding mode");
+
+	this.precision = precision;
+	this.roundingMode = roundingMode;
+    }
+
+    /**
+     * 返回精度，0 表示不限精度。
+     */
+    public int getPrecision() {
+	return precision;
+    }
+
+    /**
+     * 返回舍入模式（BigDecimal 的舍入模式常量之一）。
+     */
+    public int getRoundingMode() {
+	return roundingMode;
+    }
+
+    /**
+     * 如果 x 是精度和舍入模式都相同的 MathContext，则返回 true。
+     */
+    public boolean equals(Object x) {
+	if (!(x instanceof MathContext))
+	    return false;
+	MathContext mc = (MathContext) x;
+	return precision == mc.precision && roundingMode == mc.roundingMode;
+    }
+
+    /**
+     * 返回此 MathContext 的哈希码。
+     */
+    public int hashCode() {
+	return 37*precision + roundingMode;
+    }
+
+    /**
+     * 返回形如 "precision=34 roundingMode=ROUND_HALF_EVEN" 的字符串。
+     */
+    public String toString() {
+	return "precision=" + precision + " roundingMode=" +
+	    ROUNDING_MODE_NAMES[roundingMode];
+    }
+
+    private static final String ROUNDING_MODE_NAMES[] = {
+	"ROUND_UP", "ROUND_DOWN", "ROUND_CEILING", "ROUND_FLOOR",
+	"ROUND_HALF_UP", "ROUND_HALF_DOWN", "ROUND_HALF_EVEN",
+	"ROUND_UNNECESSARY"
+    };
+}
@@ -0,0 +1,246 @@
+/*
+ * @(#)Modulus.java	1.1 2026/10/18
+ *
+ * 版权所有 2002年 Sun Microsystems，Inc.保留所有权利。
+ * SUN 所有者/机密。使用受许可条款约束。
+ */
+
+package java.math;
+
+/**
+ * 预先计算好的正模数，用于对同一个模数反复做模幂和模乘。
+ *
+ * BigInteger.modPow 每次调用都要重新做按模数的准备工作：把模数拆成奇数部分和二的幂、
+ * 计算 Montgomery 常数和 R**2 mod m、计算中国剩余定理组合所需的逆元。
+ * Modulus 在构造时把这些都做一次并保存下来，之后的每次 modPow/modMultiply 只做真正的运算。
+ *
+ * Modulus 是不可变的，可以被多个线程共享。它的 modPow 与 BigInteger.modPow 的结果完全相同。
+ *
+ * @see BigInteger#modPow
+ * @version 	1.1, 2026/10/18
+ */
+public final class Modulus {
+    private static final BigInteger ZERO = BigInteger.valueOf(0);
+    private static final BigInteger ONE = BigInteger.valueOf(1);
+
+    /*
+     * 所有字段都是 final 的，构造完成后不再修改（montR2 数组的内容也不修改），
+     * 所以 Modulus 可以不加同步地在线程之间共享。
+     */
+
+    /* 模数本身 */
+    private final BigInteger modulus;
+
+    /* modulus = oddPart * 2**powerOfTwo，oddPart 为奇数 */
+    private final BigInteger oddPart;
+    private final int powerOfTwo;
+    private final BigInteger twoPart;
+
+    /* oddPart 的 Montgomery 常数：-oddPart**-1 mod 2**32 和 R**2 mod oddPart（oddPart 为 1 时为 0 和 null） */
+    private final int montInverse;
+    private final int montR2[];
+
+    /* oddPart**-1 mod 2**powerOfTwo，用于 Garner 形式的中国剩余定理组合（powerOfTwo 为 0 时为 null） */
+    private final BigInteger crtInverse;
+
+    /**
+     * 为模数 m 做预计算。如果 m <= 0，则抛出 ArithmeticException。
+     */
+    public Modulus(BigInteger m) {
+	if (m.signum() <= 0)
+	    throw new ArithmeticException("BigInteger: modulus not positive");
+
+	modulus = m;
+	powerOfTwo = m.getLowestSetBit();
+	oddPart = m.shiftRight(powerOfTwo);
+	if (!oddPart.equals(ONE)) {
+	    montInverse = BigInteger.montgomeryInverse(oddPart);
+	    montR2 = BigInteger.montgomeryR2(oddPart);
+	} else {
+	    montInverse = 0;
+	    montR2 = null;
+	}
+	if (powerOfTwo != 0) {
+	    twoPart = ONE.shiftLeft(powerOfTwo);
+	    crtInverse = oddPart.modInverse(twoPart);
+	} else {
+	    twoPart = null;
+	    crtInverse = null;
+	}
+    }
+
+    /**
+     * 返回这个模数。
+     */
+    public BigInteger getModulus() {
+	return modulus;
+    }
+
+    /**
+     * 返回 (base ** exponent) mod m，m 为这个模数，结果在 [0, m) 中。 （如果 exponent == 1，则返回值为 (base mod m)；
+     * 如果 exponent == 0，则返回值为 (1 mod m)，即 m == 1 时为 0；
+     * 如果 exponent < 0，则返回值为 (base ** -exponent) 的模乘逆。）
+     * 结果与 base.modPow(exponent, m) 以及 multiModPow({base}, {exponent}) 相同。
+     */
+    public BigInteger modPow(BigInteger base, BigInteger exponent) {
+	if (exponent.signum() == 0)
+	    return ONE.mod(modulus);
+
+	boolean invertResult;
+	if ((invertResult = (exponent.signum() < 0)))
+	    exponent = exponent.negate();
+
+	BigInteger bases[] = {reduce(base)};
+	BigInteger exponents[] = {exponent};
+	BigInteger result = positiveMultiModPow(bases, exponents);
+
+	return (invertResult ? result.modInverse(modulus) : result);
+    }
+
+    /**
+     * 返回 (bases[0] ** exponents[0] * bases[1] ** exponents[1] * ...) mod m，m 为这个模数，结果在 [0, m) 中。
+     * 负指数表示对应底数的模乘逆的幂；如果这样的底数没有模 m 的逆，则抛出 ArithmeticException。
+     * 指数为零的项不参与运算；所有指数都为零（或数组为空）时返回 (1 mod m)，与 modPow 一致。
+     * 如果两个数组长度不同，则抛出 IllegalArgumentException。
+     *
+     * 所有的幂共用同一串平方，每个底数按自己的滑动窗口在窗口结束处乘入（Straus/Shamir 技巧），
+     * 所以计算 g**a * h**b 的代价只比一次 modPow 多出乘法部分，平方不再重复。
+     */
+    public BigInteger multiModPow(BigInteger bases[], BigInteger exponents[]) {
+	if (bases.length != exponents.length)
+	    throw new IllegalArgumentException(
+			"bases and exponents differ in length");
+
+	/* 去掉指数为零的项，负指数换成逆元的正指数 */
+	int n = 0;
+	for (int i=0; i<exponents.length; i++)
+	    if (exponents[i].signum() != 0)
+		n++;
+	BigInteger b[] = new BigInteger[n];
+	BigInteger e[] = new BigInteger[n];
+	n = 0;
+	for (int i=0; i<exponents.length; i++) {
+	    int sign = exponents[i].signum();
+	    if (sign == 0)
+		continue;
+	    b[n] = reduce(bases[i]);
+	    e[n] = exponents[i];
+	    if (sign < 0) {
+		b[n] = b[n].modInverse(modulus);
+		e[n] = e[n].negate();
+	    }
+	    n++;
+	}
+
+	if (n == 0)
+	    return ONE.mod(modulus);
+	return positiveMultiModPow(b, e);
+    }
+
+    /**
+     * 返回 results，其中 results[i] 是 modPow(bases[i], exponents[i])。
+     * 各项互相独立，最多分给 parallelism 个线程计算（包括调用线程）；parallelism <= 1 时全部在调用线程中计算。
+     * 任何一项抛出的异常都会在所有线程结束后由本方法重新抛出。
+     * 如果两个数组长度不同，则抛出 IllegalArgumentException。
+     */
+    public BigInteger[] modPow(BigInteger bases[], BigInteger exponents[],
+			       int parallelism) {
+	if (bases.length != exponents.length)
+	    throw new IllegalArgumentException(
+			"bases and exponents differ in length");
+
+	BigInteger results[] = new BigInteger[bases.length];
+	int numWorkers = Math.min(parallelism, bases.length);
+	if (numWorkers <= 1) {
+	    for (int i=0; i<bases.length; i++)
+		results[i] = modPow(bases[i], exponents[i]);
+	    return results;
+	}
+
+	/* 第 k 个工作者计算下标为 k, k+numWorkers, k+2*numWorkers, ... 的项；第 0 个在调用线程中运行 */
+	BatchTask tasks[] = new BatchTask[numWorkers];
+	for (int k=0; k<numWorkers; k++)
+	    tasks[k] = new BatchTask(this, bases, exponents, results,
+				     k, numWorkers);
+	BigInteger.ForkedTask.runAll(tasks);
+	return results;
+    }
+
+    /**
+     * 批量 modPow 的工作线程：按固定步长计算一部分项。
+     */
+    private static class BatchTask extends BigInteger.ForkedTask {
+	private Modulus modulus;
+	private BigInteger bases[], exponents[], results[];
+	private int start, step;
+
+	BatchTask(Modulus modulus, BigInteger bases[], BigInteger exponents[],
+		  BigInteger results[], int start, int step) {
+	    this.modulus = modulus;
+	    this.bases = bases;
+	    this.exponents = exponents;
+	    this.results = results;
+	    this.start = start;
+	    this.step = step;
+	}
+
+	void compute() {
+	    for (int i=start; i<bases.length; i+=step)
+		results[i] = modulus.modPow(bases[i], exponents[i]);
+	}
+    }
+
+    /**
+     * 返回 (a * b) mod m，m 为这个模数。奇数模数使用 Montgomery 乘法，不需要除法。
+     */
+    public BigInteger modMultiply(BigInteger a, BigInteger b) {
+	a = reduce(a);
+	b = reduce(b);
+	if (powerOfTwo == 0 && montR2 != null)
+	    return BigInteger.montgomeryMultiply(a, b, oddPart, montInverse,
+						 montR2);
+	return a.multiply(b).mod(modulus);
+    }
+
+    /**
+     * 返回 x mod m，已经在 [0, m) 中的 x 原样返回。
+     */
+    private BigInteger reduce(BigInteger x) {
+	return (x.signum() < 0 || x.compareTo(modulus) >= 0
+		? x.mod(modulus) : x);
+    }
+
+    /**
+     * 返回 (bases[0] ** exponents[0] * bases[1] ** exponents[1] * ...) mod m，
+     * 假设每个底数都在 [0, m) 中，每个指数都大于零，并且数组不为空。
+     */
+    private BigInteger positiveMultiModPow(BigInteger bases[],
+					   BigInteger exponents[]) {
+	if (powerOfTwo == 0) /* 奇数模数 */
+	    return oddMultiModPow(bases, exponents);
+
+	/*
+	 * 偶数模数。对 mod oddPart 用奇数模数的算法取幂，对 mod 2**powerOfTwo 按字截断取幂，
+	 * 用中国剩余定理(Chinese Remainder Theorem)组合结果（Garner 形式）：
+	 * result = a1 + oddPart * ((a2 - a1) * crtInverse mod 2**powerOfTwo)。
+	 */
+	BigInteger oddBases[] = new BigInteger[bases.length];
+	for (int i=0; i<bases.length; i++)
+	    oddBases[i] = bases[i].mod(oddPart);
+	BigInteger a1 = oddMultiModPow(oddBases, exponents);
+	BigInteger a2 = BigInteger.multiModPow2(bases, exponents, powerOfTwo);
+	return a1.add(oddPart.multiply(
+		   a2.subtract(a1).multiply(crtInverse).mod(twoPart)));
+    }
+
+    /**
+     * 返回 (bases[0] ** exponents[0] * ...) mod oddPart，假设每个底数都在 [0, oddPart) 中并且每个指数都大于零。
+     */
+    private BigInteger oddMultiModPow(BigInteger bases[],
+				      BigInteger exponents[]) {
+	if (montR2 == null)	/* oddPart == 1 */
+	    return ZERO;
+	return BigInteger.oddMultiModPow(bases, exponents, oddPart, montInverse,
+					 montR2);
+    }
+}
@@ -1,16 +1,330 @@
 package jack.math;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Random;
+
 /**
  * @author Jack魏
  * @version 1.0 2022-04-11 23:17
  * @see BigDecimal 代码测试
  */
 public class BigDecimalTest {
+    private static final BigInteger ONE = BigInteger.valueOf(1);
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+
     /**
      * 主程序入口
      * @param args 入参
      */
     public static void main(String[] args) {
+        compactBoundary();
+        mixedScales();
+        powersOfTen();
+        roundingModes();
+        mathContextArithmetic();
+        binaryConversion(new Random(1));
+        System.out.println("BigDecimalTest OK");
+    }
+
+    /**
+     * 非标度值在 long 范围内时直接存放在 long 中，Long.MIN_VALUE 同时是“不在 long 范围内”的标记，
+     * 所以 Long.MIN_VALUE、Long.MAX_VALUE 和它们外侧的值都要与按 BigInteger 计算的结果一致。
+     */
+    private static void compactBoundary() {
+        BigInteger[] values = {LONG_MIN.subtract(ONE), LONG_MIN, LONG_MIN.add(ONE),
+                LONG_MAX.subtract(ONE), LONG_MAX, LONG_MAX.add(ONE), ONE.negate(), BigInteger.valueOf(0), ONE};
+        for (int scale = 0; scale <= 3; scale += 3) {
+            for (int i = 0; i < values.length; i++) {
+                BigDecimal x = new BigDecimal(values[i], scale);
+                check(unscaled(x).equals(values[i]) && x.scale() == scale, "unscaled " + x);
+                check(new BigDecimal(x.toString()).equals(x), "toString " + x);
+                check(unscaled(x.negate()).equals(values[i].negate()), "negate " + x);
+                check(unscaled(x.abs()).equals(values[i].abs()), "abs " + x);
+                if (values[i].bitLength() < 64) {
+                    BigDecimal compact = BigDecimal.valueOf(values[i].longValue(), scale);
+                    check(compact.equals(x) && compact.hashCode() == x.hashCode(), "valueOf " + x);
+                }
+                check(x.longValue() == values[i].divide(BigInteger.valueOf(10).pow(scale)).longValue(), "longValue " + x);
+                for (int j = 0; j < values.length; j++) {
+                    BigDecimal y = new BigDecimal(values[j], scale);
+                    check(unscaled(x.add(y)).equals(values[i].add(values[j])), "add " + x + " " + y);
+                    check(unscaled(x.subtract(y)).equals(values[i].subtract(values[j])),
+                            "subtract " + x + " " + y);
+                    BigDecimal xy = x.multiply(y);
+                    check(unscaled(xy).equals(values[i].multiply(values[j])) && xy.scale() == 2 * scale,
+                            "multiply " + x + " " + y);
+                    check(x.compareTo(y) == values[i].compareTo(values[j]), "compareTo " + x + " " + y);
+                    check(x.equals(y) == values[i].equals(values[j]), "equals " + x + " " + y);
+                }
+            }
+        }
+        // 运算的结果恰好落在 Long.MIN_VALUE 上，以及从两侧越过边界
+        BigDecimal max = BigDecimal.valueOf(Long.MAX_VALUE);
+        BigDecimal one = BigDecimal.valueOf(1);
+        check(max.negate().subtract(one).equals(BigDecimal.valueOf(Long.MIN_VALUE)), "-MAX - 1");
+        check(max.add(one).subtract(one).equals(max), "MAX + 1 - 1");
+        check(unscaled(max.add(one)).equals(LONG_MAX.add(ONE)), "MAX + 1");
+        check(unscaled(BigDecimal.valueOf(Long.MIN_VALUE).multiply(BigDecimal.valueOf(-1))).equals(LONG_MIN.negate()),
+                "MIN * -1");
+        check(BigDecimal.valueOf(Long.MIN_VALUE, 2).setScale(0, BigDecimal.ROUND_DOWN)
+                .equals(BigDecimal.valueOf(Long.MIN_VALUE / 100)), "MIN setScale");
+    }
+
+    /**
+     * 比例不同时较小比例的一方要乘以十的幂对齐，long 中的非标度值在对齐时可能溢出。
+     * 比较和加减的结果要与把两边都放大到同一比例的 BigInteger 运算一致。
+     */
+    private static void mixedScales() {
+        long[] values = {Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE / 10, Long.MIN_VALUE / 10 - 1,
+                Long.MAX_VALUE / 100 + 1, 922337203685477580L, -922337203685477581L, 1, -1, 0, 99999999999L};
+        int[] scales = {0, 1, 2, 5, 18, 19, 40};
+        for (int i = 0; i < values.length; i++) {
+            for (int si = 0; si < scales.length; si++) {
+                BigDecimal x = BigDecimal.valueOf(values[i], scales[si]);
+                for (int j = 0; j < values.length; j++) {
+                    for (int sj = 0; sj < scales.length; sj++) {
+                        BigDecimal y = BigDecimal.valueOf(values[j], scales[sj]);
+                        int s = Math.max(scales[si], scales[sj]);
+                        BigInteger ux = BigInteger.valueOf(values[i]).multiply(BigInteger.valueOf(10).pow(s - scales[si]));
+                        BigInteger uy = BigInteger.valueOf(values[j]).multiply(BigInteger.valueOf(10).pow(s - scales[sj]));
+                        check(x.compareTo(y) == ux.compareTo(uy), "compareTo " + x + " " + y);
+                        check(x.equals(y) == (values[i] == values[j] && scales[si] == scales[sj]), "equals " + x + " " + y);
+                        BigDecimal sum = x.add(y);
+                        check(sum.scale() == s && unscaled(sum).equals(ux.add(uy)), "add " + x + " " + y);
+                        BigDecimal difference = x.subtract(y);
+                        check(difference.scale() == s && unscaled(difference).equals(ux.subtract(uy)),
+                                "subtract " + x + " " + y);
+                    }
+                }
+            }
+        }
+
+        // 比例相差极大时不能真的乘以十的幂，只按位数的上下界比较
+        check(BigDecimal.valueOf(1, Integer.MAX_VALUE).compareTo(BigDecimal.valueOf(1)) < 0, "1e-MAX vs 1");
+        check(BigDecimal.valueOf(-1, Integer.MAX_VALUE).compareTo(BigDecimal.valueOf(-1)) > 0, "-1e-MAX vs -1");
+        check(BigDecimal.valueOf(Long.MAX_VALUE, 1000000000).compareTo(BigDecimal.valueOf(1, 999999990)) > 0,
+                "MAX e-1000000000 vs 1e-999999990");
+        check(BigDecimal.valueOf(Long.MAX_VALUE, 1000000000).compareTo(BigDecimal.valueOf(1, 999999981)) < 0,
+                "MAX e-1000000000 vs 1e-999999981");
+        check(BigDecimal.valueOf(0, 1000000000).compareTo(BigDecimal.valueOf(0)) == 0, "0 vs 0");
+    }
+
+    /**
+     * precision 由位长估计位数再与十的幂比较修正，10^k - 1、10^k、10^k + 1 正好在修正的边界上。
+     * setScale 按缓存的十的幂放大或缩小，超出缓存的长度时也要正确。
+     */
+    private static void powersOfTen() {
+        BigInteger ten = BigInteger.valueOf(10);
+        check(BigDecimal.valueOf(0).precision() == 1 && BigDecimal.valueOf(0, 5).precision() == 1, "precision 0");
+        for (int k = 1; k <= 600; k = (k < 40 ? k + 1 : k * 3 / 2)) {
+            BigInteger p = ten.pow(k);
+            BigInteger[] values = {p.subtract(ONE), p, p.add(ONE)};
+            int[] digits = {k, k + 1, k + 1};
+            for (int v = 0; v < values.length; v++) {
+                check(new BigDecimal(values[v], 3).precision() == digits[v], "precision " + values[v]);
+                check(new BigDecimal(values[v].negate()).precision() == digits[v], "precision -" + values[v]);
+                if (values[v].bitLength() < 64) {
+                    check(BigDecimal.valueOf(values[v].longValue(), 2).precision() == digits[v],
+                            "precision valueOf " + values[v]);
+                }
+            }
+            // 放大 k 位再舍去 k 位回到原值；舍去时丢掉的非零位按舍入模式进位
+            BigDecimal x = BigDecimal.valueOf(-123456789, 4);
+            BigDecimal up = x.setScale(4 + k);
+            check(unscaled(up).equals(BigInteger.valueOf(-123456789).multiply(p)), "setScale up " + k);
+            check(up.setScale(4, BigDecimal.ROUND_UNNECESSARY).equals(x), "setScale down " + k);
+            BigDecimal y = new BigDecimal(p.add(ONE), k);
+            check(y.setScale(0, BigDecimal.ROUND_DOWN).equals(BigDecimal.valueOf(1)), "setScale DOWN " + k);
+            check(y.setScale(0, BigDecimal.ROUND_UP).equals(BigDecimal.valueOf(2)), "setScale UP " + k);
+            check(y.precision() == k + 1 && y.setScale(k + 5).precision() == k + 6, "setScale precision " + k);
+        }
+    }
+
+    /**
+     * 每种舍入模式在中点（x.5）和中点两侧的结果，按 setScale 和 round 两种方式舍入到个位。
+     * 行依次为 ROUND_UP 到 ROUND_HALF_EVEN，列与 TIE_VALUES 对应。
+     */
+    private static final String[] TIE_VALUES = {"5.5", "2.5", "1.6", "1.1", "1.0", "-1.0", "-1.1", "-1.6", "-2.5", "-5.5"};
+    private static final long[][] TIE_RESULTS = {
+        {6, 3, 2, 2, 1, -1, -2, -2, -3, -6},
+        {5, 2, 1, 1, 1, -1, -1, -1, -2, -5},
+        {6, 3, 2, 2, 1, -1, -1, -1, -2, -5},
+        {5, 2, 1, 1, 1, -1, -2, -2, -3, -6},
+        {6, 3, 2, 1, 1, -1, -1, -2, -3, -6},
+        {5, 2, 2, 1, 1, -1, -1, -2, -2, -5},
+        {6, 2, 2, 1, 1, -1, -1, -2, -2, -6},
+    };
+
+    private static void roundingModes() {
+        for (int mode = BigDecimal.ROUND_UP; mode <= BigDecimal.ROUND_HALF_EVEN; mode++) {
+            for (int i = 0; i < TIE_VALUES.length; i++) {
+                BigDecimal x = new BigDecimal(TIE_VALUES[i]);
+                BigDecimal expect = BigDecimal.valueOf(TIE_RESULTS[mode][i]);
+                check(x.setScale(0, mode).equals(expect), "setScale " + x + " mode " + mode);
+                check(x.round(new MathContext(1, mode)).equals(expect), "round " + x + " mode " + mode);
+                // 非标度值不在 long 范围内时走 BigInteger 的路径，中点后面的零不改变结果
+                BigDecimal wide = new BigDecimal(TIE_VALUES[i] + "00000000000000000000000");
+                check(wide.setScale(0, mode).equals(expect), "setScale " + wide + " mode " + mode);
+            }
+        }
+        for (int i = 0; i < TIE_VALUES.length; i++) {
+            BigDecimal x = new BigDecimal(TIE_VALUES[i]);
+            boolean exact = x.compareTo(BigDecimal.valueOf(x.signum())) == 0;
+            try {
+                BigDecimal r = x.setScale(0, BigDecimal.ROUND_UNNECESSARY);
+                check(exact && r.compareTo(x) == 0, "ROUND_UNNECESSARY " + x);
+            } catch (ArithmeticException e) {
+                check(!exact, "ROUND_UNNECESSARY " + x);
+            }
+        }
+        // 中点之后很远的一位非零数字决定 HALF 模式的方向
+        BigDecimal above = new BigDecimal("2.50000000000000000000000001");
+        BigDecimal below = new BigDecimal("2.49999999999999999999999999");
+        for (int mode = BigDecimal.ROUND_HALF_UP; mode <= BigDecimal.ROUND_HALF_EVEN; mode++) {
+            check(above.setScale(0, mode).equals(BigDecimal.valueOf(3)), "above half mode " + mode);
+            check(below.setScale(0, mode).equals(BigDecimal.valueOf(2)), "below half mode " + mode);
+            check(above.negate().round(new MathContext(1, mode)).equals(BigDecimal.valueOf(-3)), "-above half " + mode);
+        }
+    }
+
+    /**
+     * 按 MathContext 的除法、乘方和舍入。
+     */
+    private static void mathContextArithmetic() {
+        BigDecimal one = BigDecimal.valueOf(1);
+        BigDecimal two = BigDecimal.valueOf(2);
+        BigDecimal three = BigDecimal.valueOf(3);
+
+        // 1/3 和 2/3 的商截断后后面还有非零位（粘滞位），ROUND_UP 要进位，HALF 模式不能把截断处误判为中点
+        check(one.divide(three, new MathContext(5, BigDecimal.ROUND_UP)).equals(new BigDecimal("0.33334")), "1/3 UP");
+        check(one.divide(three, new MathContext(5, BigDecimal.ROUND_DOWN)).equals(new BigDecimal("0.33333")), "1/3 DOWN");
+        check(two.divide(three, new MathContext(5, BigDecimal.ROUND_UP)).equals(new BigDecimal("0.66667")), "2/3 UP");
+        check(two.divide(three, new MathContext(5, BigDecimal.ROUND_DOWN)).equals(new BigDecimal("0.66666")), "2/3 DOWN");
+        for (int mode = BigDecimal.ROUND_HALF_UP; mode <= BigDecimal.ROUND_HALF_EVEN; mode++) {
+            MathContext mc = new MathContext(5, mode);
+            check(one.divide(three, mc).equals(new BigDecimal("0.33333")), "1/3 mode " + mode);
+            check(two.divide(three, mc).equals(new BigDecimal("0.66667")), "2/3 mode " + mode);
+            check(one.negate().divide(three, mc).equals(new BigDecimal("-0.33333")), "-1/3 mode " + mode);
+            // 0.1250000001249... 和 0.1249999998...：截断到两位后正好是 0.12|5，余下的位决定方向
+            BigDecimal above = BigDecimal.valueOf(1000000001).divide(BigDecimal.valueOf(7999999999L), new MathContext(2, mode));
+            BigDecimal below = BigDecimal.valueOf(999999999).divide(BigDecimal.valueOf(8000000001L), new MathContext(2, mode));
+            check(above.equals(new BigDecimal("0.13")) && below.equals(new BigDecimal("0.12")), "near tie mode " + mode);
+        }
+        // 精确的中点：1/8 = 0.125
+        BigDecimal eighth = one.divide(BigDecimal.valueOf(8), new MathContext(2, BigDecimal.ROUND_HALF_EVEN));
+        check(eighth.equals(new BigDecimal("0.12")), "1/8 HALF_EVEN");
+        check(one.divide(BigDecimal.valueOf(8), new MathContext(2, BigDecimal.ROUND_HALF_UP)).equals(new BigDecimal("0.13")),
+                "1/8 HALF_UP");
+        try {
+            one.divide(three, MathContext.UNLIMITED);
+            check(false, "1/3 UNLIMITED");
+        } catch (ArithmeticException e) {
+            // 预期
+        }
+        check(one.divide(BigDecimal.valueOf(8), MathContext.UNLIMITED).equals(new BigDecimal("0.125")), "1/8 UNLIMITED");
+
+        // 负指数的乘方是倒数的乘方
+        check(two.pow(-2, new MathContext(5)).compareTo(new BigDecimal("0.25")) == 0, "2^-2");
+        check(three.pow(-1, MathContext.DECIMAL32).equals(new BigDecimal("0.3333333")), "3^-1");
+        check(BigDecimal.valueOf(10).pow(-3, new MathContext(3)).compareTo(new BigDecimal("0.001")) == 0, "10^-3");
+        check(new BigDecimal("1.1").pow(-10, MathContext.DECIMAL64).equals(new BigDecimal("0.3855432894295317")),
+                "1.1^-10");
+        check(three.pow(0, MathContext.DECIMAL32).equals(one), "3^0");
+        try {
+            three.pow(-1);
+            check(false, "pow(-1)");
+        } catch (ArithmeticException e) {
+            // 预期
+        }
+        try {
+            three.pow(-1, MathContext.UNLIMITED);
+            check(false, "pow(-1, UNLIMITED)");
+        } catch (ArithmeticException e) {
+            // 预期
+        }
+
+        // 比例不能为负：舍入位置在小数点左边时，舍去的位以零代替，比例为 0
+        BigDecimal r = BigDecimal.valueOf(12345).round(new MathContext(2));
+        check(r.scale() == 0 && r.equals(BigDecimal.valueOf(12000)), "12345 round 2");
+        r = new BigDecimal("12345.678").round(new MathContext(2, BigDecimal.ROUND_UP));
+        check(r.scale() == 0 && r.equals(BigDecimal.valueOf(13000)), "12345.678 round UP 2");
+        r = BigDecimal.valueOf(99999).round(new MathContext(2));
+        check(r.scale() == 0 && r.equals(BigDecimal.valueOf(100000)), "99999 round 2");
+        r = new BigDecimal("9.99").round(new MathContext(2));
+        check(r.scale() == 0 && r.equals(BigDecimal.valueOf(10)), "9.99 round 2");
+        r = BigDecimal.valueOf(123456).multiply(BigDecimal.valueOf(1000), new MathContext(3));
+        check(r.scale() == 0 && r.equals(BigDecimal.valueOf(123000000)), "123456 * 1000 round 3");
+    }
+
+    /**
+     * doubleValue 和 floatValue 必须正确舍入：相邻两个 double（float）的中点按偶数舍入，
+     * 中点两侧稍远一点的值舍入到较近的一个。BigDecimal(double) 是精确的，用它构造中点。
+     * 覆盖非规格化数、规格化数的下界、最大有限值以及随机的值。
+     */
+    private static void binaryConversion(Random rnd) {
+        long[] doubleBits = {1, 2, 3, 0x000fffffffffffffL, 0x0010000000000000L, 0x0010000000000001L,
+                0x3ff0000000000000L, 0x3ff0000000000001L, 0x4340000000000000L, 0x7fefffffffffffffL};
+        for (int i = 0; i < doubleBits.length + 200; i++) {
+            long bits = (i < doubleBits.length ? doubleBits[i] : rnd.nextLong() & 0x7fefffffffffffffL);
+            if (bits == 0) {
+                continue;
+            }
+            double lo = Double.longBitsToDouble(bits - 1);
+            double hi = Double.longBitsToDouble(bits);
+            double even = ((bits & 1) == 0 ? hi : lo);
+            BigDecimal sum = new BigDecimal(lo).add(new BigDecimal(hi));
+            BigDecimal mid = sum.divide(BigDecimal.valueOf(2), sum.scale() + 1, BigDecimal.ROUND_UNNECESSARY);
+            BigDecimal tiny = BigDecimal.valueOf(1, mid.scale() + 5);
+            check(new BigDecimal(hi).doubleValue() == hi, "doubleValue exact " + hi);
+            check(mid.doubleValue() == even, "doubleValue halfway " + lo + " " + hi);
+            check(mid.add(tiny).doubleValue() == hi, "doubleValue above halfway " + hi);
+            check(mid.subtract(tiny).doubleValue() == lo, "doubleValue below halfway " + lo);
+            check(mid.negate().doubleValue() == -even, "doubleValue -halfway " + lo + " " + hi);
+        }
+        // 比 Double.MIN_VALUE 的一半稍大的值舍入到 Double.MIN_VALUE，一半本身舍入到零；
+        // 最大有限值与 2^1024 的中点舍入到无穷
+        BigDecimal minValue = new BigDecimal(Double.MIN_VALUE);
+        BigDecimal half = minValue.divide(BigDecimal.valueOf(2), minValue.scale() + 1, BigDecimal.ROUND_UNNECESSARY);
+        check(half.doubleValue() == 0.0, "MIN_VALUE / 2");
+        check(half.add(BigDecimal.valueOf(1, half.scale() + 1)).doubleValue() == Double.MIN_VALUE, "MIN_VALUE / 2 + tiny");
+        BigDecimal maxValue = new BigDecimal(Double.MAX_VALUE);
+        BigDecimal ulp = maxValue.subtract(new BigDecimal(Double.longBitsToDouble(0x7feffffffffffffeL)));
+        BigDecimal pastMax = maxValue.add(ulp.divide(BigDecimal.valueOf(2), 0, BigDecimal.ROUND_UNNECESSARY));
+        check(pastMax.doubleValue() == Double.POSITIVE_INFINITY, "MAX_VALUE + ulp/2");
+        check(pastMax.subtract(BigDecimal.valueOf(1)).doubleValue() == Double.MAX_VALUE, "MAX_VALUE + ulp/2 - 1");
+
+        int[] floatBits = {1, 2, 3, 0x007fffff, 0x00800000, 0x00800001, 0x3f800000, 0x3f800001, 0x4b800000, 0x7f7fffff};
+        for (int i = 0; i < floatBits.length + 200; i++) {
+            int bits = (i < floatBits.length ? floatBits[i] : rnd.nextInt() & 0x7f7fffff);
+            if (bits == 0) {
+                continue;
+            }
+            float lo = Float.intBitsToFloat(bits - 1);
+            float hi = Float.intBitsToFloat(bits);
+            float even = ((bits & 1) == 0 ? hi : lo);
+            BigDecimal sum = new BigDecimal(lo).add(new BigDecimal(hi));
+            BigDecimal mid = sum.divide(BigDecimal.valueOf(2), sum.scale() + 1, BigDecimal.ROUND_UNNECESSARY);
+            BigDecimal tiny = BigDecimal.valueOf(1, mid.scale() + 5);
+            check(new BigDecimal(hi).floatValue() == hi, "floatValue exact " + hi);
+            check(mid.floatValue() == even, "floatValue halfway " + lo + " " + hi);
+            check(mid.add(tiny).floatValue() == hi, "floatValue above halfway " + hi);
+            check(mid.subtract(tiny).floatValue() == lo, "floatValue below halfway " + lo);
+        }
+    }
+
+    /**
+     * 返回 x 的非标度值，即 x * 10^scale。
+     */
+    private static BigInteger unscaled(BigDecimal x) {
+        return x.movePointRight(x.scale()).toBigInteger();
+    }
 
+    private static void check(boolean ok, String message) {
+        if (!ok) {
+            throw new AssertionError(message);
+        }
     }
 }
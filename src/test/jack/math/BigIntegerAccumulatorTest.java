@@ -0,0 +1,144 @@
+package jack.math;
+
+import java.math.BigInteger;
+import java.math.BigIntegerAccumulator;
+import java.util.Random;
+
+/**
+ * @author Jack魏
+ * @version 1.0 2026-10-18
+ * @see BigIntegerAccumulator 代码测试
+ */
+public class BigIntegerAccumulatorTest {
+    private static final BigInteger ONE = BigInteger.valueOf(1);
+
+    /**
+     * 主程序入口
+     * @param args 入参
+     */
+    public static void main(String[] args) {
+        Random rnd = new Random(1);
+        multiplyMinValue(rnd);
+        subtractAcrossZero(rnd);
+        shiftRightFloors(rnd);
+
+        // 随机的运算序列与 BigInteger 的同名运算逐步比较
+        for (int i = 0; i < 200; i++) {
+            BigInteger expect = new BigInteger(1 + rnd.nextInt(300), rnd);
+            BigIntegerAccumulator acc = new BigIntegerAccumulator(expect);
+            for (int step = 0; step < 50; step++) {
+                BigInteger x = new BigInteger(1 + rnd.nextInt(200), rnd);
+                if (rnd.nextInt(2) == 0) {
+                    x = x.negate();
+                }
+                long y = rnd.nextLong();
+                int n = rnd.nextInt(100);
+                switch (rnd.nextInt(7)) {
+                    case 0: acc.add(x); expect = expect.add(x); break;
+                    case 1: acc.subtract(x); expect = expect.subtract(x); break;
+                    case 2: acc.add(y); expect = expect.add(BigInteger.valueOf(y)); break;
+                    case 3: acc.multiply(y); expect = expect.multiply(BigInteger.valueOf(y)); break;
+                    case 4: acc.addProduct(x, y); expect = expect.add(x.multiply(BigInteger.valueOf(y))); break;
+                    case 5: acc.shiftLeft(n); expect = expect.shiftLeft(n); break;
+                    default: acc.shiftRight(n); expect = expect.shiftRight(n); break;
+                }
+                check(acc.toBigInteger().equals(expect), "random step " + i + "/" + step);
+                check(acc.signum() == expect.signum(), "random signum " + i + "/" + step);
+            }
+        }
+        System.out.println("BigIntegerAccumulatorTest OK");
+    }
+
+    /**
+     * |Long.MIN_VALUE| 不能用 long 表示，乘法必须把它当作无符号数 2^63 处理。
+     */
+    private static void multiplyMinValue(Random rnd) {
+        BigInteger min = BigInteger.valueOf(Long.MIN_VALUE);
+        long[] small = {1, -1, 3, -3, Long.MIN_VALUE, Long.MAX_VALUE, 0xffffffffL};
+        for (int i = 0; i < small.length; i++) {
+            BigIntegerAccumulator acc = new BigIntegerAccumulator(small[i]).multiply(Long.MIN_VALUE);
+            check(acc.toBigInteger().equals(BigInteger.valueOf(small[i]).multiply(min)), "multiply MIN_VALUE " + small[i]);
+        }
+        for (int i = 0; i < 50; i++) {
+            BigInteger x = new BigInteger(1 + rnd.nextInt(500), rnd);
+            if (i % 2 == 1) {
+                x = x.negate();
+            }
+            check(new BigIntegerAccumulator(x).multiply(Long.MIN_VALUE).toBigInteger().equals(x.multiply(min)),
+                    "multiply MIN_VALUE " + x);
+            check(new BigIntegerAccumulator(x).addProduct(x, Long.MIN_VALUE).toBigInteger()
+                    .equals(x.add(x.multiply(min))), "addProduct MIN_VALUE " + x);
+        }
+        check(new BigIntegerAccumulator().subtract(Long.MIN_VALUE).toBigInteger().equals(min.negate()),
+                "subtract MIN_VALUE");
+        check(new BigIntegerAccumulator(Long.MIN_VALUE).add(Long.MIN_VALUE).toBigInteger().equals(min.shiftLeft(1)),
+                "add MIN_VALUE");
+    }
+
+    /**
+     * 结果越过零时符号翻转，量级变成两者之差；差恰好为零时符号为 0。
+     */
+    private static void subtractAcrossZero(Random rnd) {
+        check(new BigIntegerAccumulator(5).subtract(7).toBigInteger().equals(BigInteger.valueOf(-2)), "5 - 7");
+        check(new BigIntegerAccumulator(-5).add(7).toBigInteger().equals(BigInteger.valueOf(2)), "-5 + 7");
+        BigIntegerAccumulator zero = new BigIntegerAccumulator(7).subtract(7);
+        check(zero.signum() == 0 && zero.toBigInteger().signum() == 0, "7 - 7");
+
+        // 2^k - (2^k + 1) 的借位要穿过所有的 int
+        for (int k = 1; k < 300; k += 31) {
+            BigInteger p = ONE.shiftLeft(k);
+            BigIntegerAccumulator acc = new BigIntegerAccumulator(p).subtract(p.add(ONE));
+            check(acc.toBigInteger().equals(BigInteger.valueOf(-1)), "2^k - (2^k + 1) " + k);
+            acc = new BigIntegerAccumulator(p.negate()).add(p.add(ONE)).subtract(2);
+            check(acc.toBigInteger().equals(BigInteger.valueOf(-1)), "-2^k + (2^k + 1) - 2 " + k);
+        }
+        for (int i = 0; i < 200; i++) {
+            BigInteger a = new BigInteger(1 + rnd.nextInt(400), rnd);
+            BigInteger b = a.add(new BigInteger(1 + rnd.nextInt(400), rnd));
+            BigIntegerAccumulator acc = new BigIntegerAccumulator(a).subtract(b);
+            check(acc.toBigInteger().equals(a.subtract(b)) && acc.signum() == a.subtract(b).signum(),
+                    "subtract across zero " + a + " " + b);
+            acc.add(b).add(b);
+            check(acc.toBigInteger().equals(a.add(b)), "add back across zero " + a + " " + b);
+        }
+    }
+
+    /**
+     * 负数右移向负无穷取整：移出的位中有 1 时量级加一；全部移出时结果为 -1。
+     */
+    private static void shiftRightFloors(Random rnd) {
+        check(new BigIntegerAccumulator(-1).shiftRight(1).toBigInteger().equals(BigInteger.valueOf(-1)), "-1 >> 1");
+        check(new BigIntegerAccumulator(-4).shiftRight(1).toBigInteger().equals(BigInteger.valueOf(-2)), "-4 >> 1");
+        check(new BigIntegerAccumulator(-5).shiftRight(1).toBigInteger().equals(BigInteger.valueOf(-3)), "-5 >> 1");
+        check(new BigIntegerAccumulator(-5).shiftRight(1000).toBigInteger().equals(BigInteger.valueOf(-1)), "-5 >> 1000");
+        check(new BigIntegerAccumulator(5).shiftRight(1000).signum() == 0, "5 >> 1000");
+
+        // -(2^k) 右移不丢失 1，-(2^k + 1) 右移丢失 1；-(2^k - 1) 加一后进位到新的一位
+        int[] shifts = {1, 31, 32, 33, 63, 64, 65, 100};
+        for (int k = 1; k < 260; k += 17) {
+            BigInteger p = ONE.shiftLeft(k);
+            BigInteger[] values = {p.negate(), p.add(ONE).negate(), p.subtract(ONE).negate()};
+            for (int v = 0; v < values.length; v++) {
+                for (int s = 0; s < shifts.length; s++) {
+                    BigIntegerAccumulator acc = new BigIntegerAccumulator(values[v]).shiftRight(shifts[s]);
+                    check(acc.toBigInteger().equals(values[v].shiftRight(shifts[s])),
+                            "shiftRight " + values[v] + " " + shifts[s]);
+                }
+            }
+        }
+        for (int i = 0; i < 300; i++) {
+            BigInteger x = new BigInteger(1 + rnd.nextInt(400), rnd).negate();
+            int n = rnd.nextInt(450);
+            check(new BigIntegerAccumulator(x).shiftRight(n).toBigInteger().equals(x.shiftRight(n)),
+                    "shiftRight " + x + " " + n);
+            check(new BigIntegerAccumulator(x).shiftLeft(-n).toBigInteger().equals(x.shiftRight(n)),
+                    "shiftLeft " + x + " " + (-n));
+        }
+    }
+
+    private static void check(boolean ok, String message) {
+        if (!ok) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,959 @@
+package jack.math;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.math.BigInteger;
+import java.math.Modulus;
+import java.util.Random;
+
+/**
+ * @author Jack魏
+ * @version 1.0 2026-10-18
+ * @see BigInteger 代码测试
+ */
+public class BigIntegerTest {
+    private static final BigInteger ONE = BigInteger.valueOf(1);
+
+    /**
+     * 主程序入口
+     * @param args 入参
+     * @throws IOException 流读写失败
+     */
+    public static void main(String[] args) throws IOException {
+        Random rnd = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            BigInteger a = new BigInteger(1 + rnd.nextInt(512), rnd);
+            BigInteger b = new BigInteger(1 + rnd.nextInt(256), rnd).add(BigInteger.valueOf(1));
+            if (rnd.nextInt(2) == 0) {
+                a = a.negate();
+            }
+
+            // (a / b) * b + (a % b) == a
+            BigInteger[] qr = a.divideAndRemainder(b);
+            check(qr[0].multiply(b).add(qr[1]).equals(a), "divideAndRemainder " + a + " " + b);
+            // (a + b) - b == a
+            check(a.add(b).subtract(b).equals(a), "add/subtract " + a + " " + b);
+            // gcd 同时整除两个数，并且与辗转相除的结果相同
+            BigInteger g = a.gcd(b);
+            check(a.remainder(g).signum() == 0 && b.remainder(g).signum() == 0, "gcd " + a + " " + b);
+            check(g.equals(euclid(a, b)), "gcd " + a + " " + b);
+            // 字符串往返
+            check(new BigInteger(a.toString()).equals(a), "toString " + a);
+        }
+        streamLimits();
+        multiplyThresholds(rnd);
+        divideLarge(rnd);
+        modPowZeroExponent();
+        modPow(rnd);
+        multiModPow(rnd);
+        multiplyNtt(rnd);
+        stringConversion(rnd);
+        primality();
+        primeGeneration(rnd);
+        roots(rnd);
+        shifts(rnd);
+        bitwise(rnd);
+        bitCounts(rnd);
+        gcd(rnd);
+        modInverse(rnd);
+        floatingPoint(rnd);
+        System.out.println("BigIntegerTest OK");
+    }
+
+    /**
+     * 乘法按操作数的长度（以 int 计）在“学校”乘法、Karatsuba 和 Toom-Cook 之间切换，
+     * 阈值为 80 和 240 个 int，平方的阈值为 128 和 216 个 int。
+     * 在阈值两侧取长短不一的操作数，与按短块拆开、只走“学校”乘法的结果比较。
+     */
+    private static void multiplyThresholds(Random rnd) {
+        int[] lengths = {1, 2, 40, 79, 80, 81, 127, 128, 129, 160, 215, 216, 217, 239, 240, 241, 500, 1000};
+        for (int i = 0; i < lengths.length; i++) {
+            for (int j = i; j < lengths.length; j++) {
+                BigInteger a = randomInts(lengths[i], rnd);
+                BigInteger b = randomInts(lengths[j], rnd);
+                if (rnd.nextInt(2) == 0) {
+                    b = b.negate();
+                }
+                BigInteger ab = a.multiply(b);
+                check(ab.equals(schoolbook(a, b)), "multiply " + lengths[i] + "x" + lengths[j]);
+                check(b.multiply(a).equals(ab), "multiply commutes " + lengths[i] + "x" + lengths[j]);
+                BigInteger[] qr = ab.divideAndRemainder(b);
+                check(qr[0].equals(a) && qr[1].signum() == 0, "(a*b)/b " + lengths[i] + "x" + lengths[j]);
+            }
+            // 全 1 的量级让每一步进位都传到最高位
+            BigInteger ones = ONE.shiftLeft(32 * lengths[i]).subtract(ONE);
+            check(ones.multiply(ones).equals(schoolbook(ones, ones)), "multiply ones " + lengths[i]);
+
+            // (a+b)^2 == a^2 + 2ab + b^2，a == a 时走平方
+            BigInteger a = randomInts(lengths[i], rnd);
+            BigInteger b = randomInts(lengths[lengths.length - 1 - i], rnd);
+            BigInteger sum = a.add(b);
+            BigInteger expect = a.multiply(a).add(a.multiply(b).shiftLeft(1)).add(b.multiply(b));
+            check(sum.multiply(sum).equals(expect), "square identity " + lengths[i]);
+            check(a.multiply(a).equals(schoolbook(a, a)), "square " + lengths[i]);
+            check(a.pow(2).equals(a.multiply(a)), "pow(2) " + lengths[i]);
+        }
+    }
+
+    /**
+     * 除数不短于 80 个 int、被除数比除数长至少 40 个 int 时走 Burnikel-Ziegler 递归除法，否则走 Knuth 的算法 D。
+     * 在两条路径上检查 q*b + r == a 且 0 <= |r| < |b|，r 与 a 同号。
+     * 最高 int 为 0x80000000 或 0xffffffff 的除数分别是规格化移位为 0 和试商最容易偏大的情形。
+     */
+    private static void divideLarge(Random rnd) {
+        int[] divisorLengths = {1, 2, 79, 80, 81, 120, 160, 200, 400};
+        int[] extraLengths = {0, 1, 39, 40, 41, 80, 160, 500, 1200};
+        int[] topInts = {0, 0x80000000, 0xffffffff};
+        for (int i = 0; i < divisorLengths.length; i++) {
+            int n = divisorLengths[i];
+            for (int t = 0; t < topInts.length; t++) {
+                BigInteger b = randomInts(n, rnd);
+                if (topInts[t] != 0) {
+                    BigInteger low = b.and(ONE.shiftLeft(32 * (n - 1)).subtract(ONE));
+                    b = BigInteger.valueOf(topInts[t] & 0xffffffffL).shiftLeft(32 * (n - 1)).or(low);
+                }
+                for (int j = 0; j < extraLengths.length; j++) {
+                    BigInteger a = randomInts(n + extraLengths[j], rnd);
+                    checkDivide(a, b);
+                    checkDivide(a.negate(), b);
+                    checkDivide(a, b.negate());
+                    // 余数为 b - 1 的被除数
+                    BigInteger q = randomInts(1 + extraLengths[j], rnd);
+                    checkDivide(q.multiply(b).add(b).subtract(ONE), b);
+                }
+            }
+            // 2^(32n-1) 和 2^(32n)-1 本身作除数
+            BigInteger a = randomInts(2 * n + 50, rnd);
+            checkDivide(a, ONE.shiftLeft(32 * n - 1));
+            checkDivide(a, ONE.shiftLeft(32 * n).subtract(ONE));
+            checkDivide(ONE.shiftLeft(64 * n + 1280).subtract(ONE), ONE.shiftLeft(32 * n).subtract(ONE));
+        }
+    }
+
+    private static void checkDivide(BigInteger a, BigInteger b) {
+        BigInteger[] qr = a.divideAndRemainder(b);
+        BigInteger r = qr[1];
+        check(qr[0].multiply(b).add(r).equals(a), "divide q*b+r " + a.bitLength() + "/" + b.bitLength());
+        check(r.abs().compareTo(b.abs()) < 0 && (r.signum() == 0 || r.signum() == a.signum()),
+                "divide remainder " + a.bitLength() + "/" + b.bitLength());
+        check(a.divide(b).equals(qr[0]) && a.remainder(b).equals(r), "divide/remainder " + a.bitLength());
+    }
+
+    /**
+     * 奇数模数用 Montgomery 形式的滑动窗口取幂，偶数模数拆成奇数部分和 2 的幂再用中国剩余定理组合。
+     * 与逐位平方再乘的参照实现比较；负指数的结果乘以正指数的结果必须是 1 mod m。
+     */
+    private static void modPow(Random rnd) {
+        int[] modulusBits = {1, 2, 5, 31, 32, 33, 64, 65, 127, 512, 1024, 2048};
+        for (int i = 0; i < modulusBits.length; i++) {
+            for (int kind = 0; kind < 3; kind++) {
+                BigInteger m = new BigInteger(modulusBits[i], rnd).setBit(modulusBits[i] - 1);
+                if (kind == 0) {
+                    m = m.setBit(0);                                // 奇数
+                } else if (kind == 1) {
+                    m = ONE.shiftLeft(modulusBits[i]);              // 2 的幂
+                } else {
+                    m = m.setBit(0).shiftLeft(1 + rnd.nextInt(70));  // 奇数乘以 2 的幂
+                }
+                for (int t = 0; t < 4; t++) {
+                    BigInteger base = new BigInteger(modulusBits[i] + 20, rnd);
+                    if (t % 2 == 1) {
+                        base = base.negate();
+                    }
+                    BigInteger e = new BigInteger(t == 0 ? 3 : 1 + rnd.nextInt(modulusBits[i] < 512 ? 600 : 200), rnd);
+                    BigInteger r = base.modPow(e, m);
+                    check(r.equals(squareAndMultiply(base, e, m)), "modPow " + base + " " + e + " " + m);
+                    check(new Modulus(m).modPow(base, e).equals(r), "Modulus.modPow " + base + " " + e + " " + m);
+                    if (e.signum() != 0 && base.gcd(m).equals(ONE)) {
+                        BigInteger inverse = base.modPow(e.negate(), m);
+                        check(inverse.signum() >= 0 && inverse.compareTo(m) < 0
+                                && inverse.multiply(r).mod(m).equals(ONE.mod(m)), "modPow negative exponent " + m);
+                    }
+                }
+            }
+        }
+        // 指数为 1 时结果为 base mod m；不可逆的底数不能取负指数
+        BigInteger m = BigInteger.valueOf(1000003).multiply(BigInteger.valueOf(12));
+        check(BigInteger.valueOf(-5).modPow(ONE, m).equals(BigInteger.valueOf(-5).mod(m)), "modPow exponent 1");
+        try {
+            BigInteger.valueOf(6).modPow(BigInteger.valueOf(-3), m);
+            check(false, "modPow non-invertible base");
+        } catch (ArithmeticException e) {
+            // 预期
+        }
+    }
+
+    /**
+     * multiModPow 的结果必须等于各项单独 modPow 的乘积 mod m；批量的 Modulus.modPow 的每一项必须等于单独的 modPow，
+     * 无论用几个线程。不可逆的底数配负指数时两者都抛出 ArithmeticException。
+     */
+    private static void multiModPow(Random rnd) {
+        int[] modulusBits = {3, 64, 200, 1024};
+        for (int i = 0; i < modulusBits.length; i++) {
+            for (int kind = 0; kind < 2; kind++) {
+                BigInteger m = new BigInteger(modulusBits[i], rnd).setBit(modulusBits[i] - 1).setBit(0);
+                if (kind == 1) {
+                    m = m.shiftLeft(1 + rnd.nextInt(40));
+                }
+                Modulus modulus = new Modulus(m);
+                for (int n = 1; n <= 5; n++) {
+                    BigInteger[] bases = new BigInteger[n];
+                    BigInteger[] exponents = new BigInteger[n];
+                    BigInteger expect = ONE.mod(m);
+                    for (int k = 0; k < n; k++) {
+                        do {
+                            bases[k] = new BigInteger(modulusBits[i] + 10, rnd).subtract(ONE.shiftLeft(modulusBits[i]));
+                        } while (!bases[k].gcd(m).equals(ONE));
+                        exponents[k] = new BigInteger(1 + rnd.nextInt(300), rnd);
+                        if (k % 3 == 1) {
+                            exponents[k] = exponents[k].negate();
+                        }
+                        expect = expect.multiply(bases[k].modPow(exponents[k], m)).mod(m);
+                    }
+                    check(BigInteger.multiModPow(bases, exponents, m).equals(expect), "multiModPow " + m + " n=" + n);
+                    check(modulus.multiModPow(bases, exponents).equals(expect), "Modulus.multiModPow " + m + " n=" + n);
+
+                    for (int parallelism = 1; parallelism <= 3; parallelism += 2) {
+                        BigInteger[] results = modulus.modPow(bases, exponents, parallelism);
+                        for (int k = 0; k < n; k++) {
+                            check(results[k].equals(bases[k].modPow(exponents[k], m)),
+                                    "batch modPow " + m + " parallelism " + parallelism);
+                        }
+                    }
+                }
+            }
+        }
+
+        // 6 与 12 * 1000003 不互素，没有逆元
+        BigInteger m = BigInteger.valueOf(1000003).multiply(BigInteger.valueOf(12));
+        BigInteger[] bases = {BigInteger.valueOf(5), BigInteger.valueOf(6), BigInteger.valueOf(7)};
+        BigInteger[] exponents = {BigInteger.valueOf(3), BigInteger.valueOf(-2), BigInteger.valueOf(9)};
+        try {
+            BigInteger.multiModPow(bases, exponents, m);
+            check(false, "multiModPow non-invertible base");
+        } catch (ArithmeticException e) {
+            // 预期
+        }
+        try {
+            new Modulus(m).modPow(bases, exponents, 3);
+            check(false, "batch modPow non-invertible base");
+        } catch (ArithmeticException e) {
+            // 预期
+        }
+        // 指数为零的不可逆底数不参与运算
+        exponents[1] = BigInteger.valueOf(0);
+        check(BigInteger.multiModPow(bases, exponents, m)
+                .equals(BigInteger.valueOf(5).modPow(BigInteger.valueOf(3), m).multiply(BigInteger.valueOf(7).modPow(
+                        BigInteger.valueOf(9), m)).mod(m)), "multiModPow zero exponent");
+    }
+
+    /**
+     * 参照实现：从高位到低位逐位平方，位为 1 时再乘以底数，每一步都取模。e >= 0。
+     */
+    private static BigInteger squareAndMultiply(BigInteger base, BigInteger e, BigInteger m) {
+        BigInteger b = base.mod(m);
+        BigInteger result = ONE.mod(m);
+        for (int i = e.bitLength() - 1; i >= 0; i--) {
+            result = result.multiply(result).mod(m);
+            if (e.testBit(i)) {
+                result = result.multiply(b).mod(m);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 两个操作数都不短于 12000 个 int 时乘法走数论变换，平方的阈值为 18000 个 int。
+     * 与把一个操作数拆成低于阈值的两半、分别走 Toom-Cook 的结果比较；并行版本的结果必须与串行的相同。
+     */
+    private static void multiplyNtt(Random rnd) {
+        BigInteger a = randomInts(12001, rnd);
+        BigInteger b = randomInts(12500, rnd).negate();
+        BigInteger ab = a.multiply(b);
+        check(ab.equals(splitProduct(a, b, 6000)), "multiply NTT");
+        check(a.multiply(b, 4).equals(ab), "multiply NTT parallel");
+
+        BigInteger ones = ONE.shiftLeft(32 * 12100).subtract(ONE);
+        check(ones.multiply(ones).equals(ONE.shiftLeft(2 * 32 * 12100).subtract(ones.shiftLeft(1)).subtract(ONE)),
+                "multiply NTT ones");
+
+        BigInteger c = randomInts(18001, rnd);
+        BigInteger cc = c.multiply(c);
+        check(cc.equals(splitProduct(c, c, 9000)), "square NTT");
+        check(c.multiply(c, 3).equals(cc), "square NTT parallel");
+        check(c.pow(2).equals(cc), "pow(2) NTT");
+
+        // Toom-Cook 的五个子乘积也按 parallelism 分给多个线程
+        BigInteger d = randomInts(3000, rnd);
+        BigInteger e = randomInts(5000, rnd);
+        check(d.multiply(e, 5).equals(d.multiply(e)), "multiply Toom-Cook parallel");
+    }
+
+    /**
+     * 把 b 拆成每块 ints 个 int，分别与 a 相乘后移位相加；每块都短于数论变换的阈值。
+     */
+    private static BigInteger splitProduct(BigInteger a, BigInteger b, int ints) {
+        BigInteger mask = ONE.shiftLeft(32 * ints).subtract(ONE);
+        BigInteger rest = b.abs();
+        BigInteger result = BigInteger.valueOf(0);
+        for (int shift = 0; rest.signum() != 0; shift += 32 * ints) {
+            result = result.add(a.multiply(rest.and(mask)).shiftLeft(shift));
+            rest = rest.shiftRight(32 * ints);
+        }
+        return b.signum() < 0 ? result.negate() : result;
+    }
+
+    /**
+     * 超过 20 个 int 的数按分治法转换：除以 radix^(2^k) 后商和余数分别递归，余数要补足前导零。
+     * 与按 long 分块逐段转换的结果比较，并检查往返；带 parallelism 的版本结果必须相同。
+     */
+    private static void stringConversion(Random rnd) {
+        int[] radixes = {2, 3, 7, 10, 16, 36};
+        int[] bitLengths = {641, 700, 1000, 3000, 10000, 40000};
+        for (int i = 0; i < bitLengths.length; i++) {
+            for (int j = 0; j < radixes.length; j++) {
+                int radix = radixes[j];
+                BigInteger x = new BigInteger(bitLengths[i], rnd);
+                if (rnd.nextInt(2) == 0) {
+                    x = x.negate();
+                }
+                String str = x.toString(radix);
+                check(str.equals(slowToString(x, radix)), "toString " + bitLengths[i] + " radix " + radix);
+                check(new BigInteger(str, radix).equals(x), "parse " + bitLengths[i] + " radix " + radix);
+
+                // 中间有一长串零的数：递归的余数部分要补足前导零
+                BigInteger gap = BigInteger.valueOf(radix).pow(bitLengths[i] / 4).add(BigInteger.valueOf(radix - 1));
+                check(gap.toString(radix).equals(slowToString(gap, radix)), "toString gap radix " + radix);
+                check(new BigInteger(gap.toString(radix), radix).equals(gap), "parse gap radix " + radix);
+            }
+        }
+        // radix^k - 1 是 k 个最大数字，radix^k 是 1 后面跟 k 个零
+        BigInteger nines = BigInteger.valueOf(10).pow(5000).subtract(ONE);
+        String s = nines.toString();
+        check(s.length() == 5000 && s.replace('9', ' ').trim().length() == 0, "10^5000 - 1");
+        check(nines.add(ONE).toString().equals("1" + s.replace('9', '0')), "10^5000");
+        check(new BigInteger("000000" + s).equals(nines) && new BigInteger("-" + s).equals(nines.negate()), "parse 10^5000 - 1");
+
+        // 超过并行阈值（2048 个 int）时另一个线程转换一半
+        BigInteger big = new BigInteger(200000, rnd).negate();
+        for (int j = 0; j < radixes.length; j++) {
+            String serial = big.toString(radixes[j]);
+            check(big.toString(radixes[j], 4).equals(serial), "toString parallel radix " + radixes[j]);
+            check(new BigInteger(serial, radixes[j], 4).equals(big), "parse parallel radix " + radixes[j]);
+        }
+    }
+
+    /**
+     * 参照实现：每次除以能放进 long 的最大的 radix 的幂，余数用 Long.toString 转换并补足前导零。
+     */
+    private static String slowToString(BigInteger x, int radix) {
+        int chunkDigits = 0;
+        long chunk = 1;
+        while (chunk <= Long.MAX_VALUE / radix) {
+            chunk *= radix;
+            chunkDigits++;
+        }
+        BigInteger divisor = BigInteger.valueOf(chunk);
+        BigInteger rest = x.abs();
+        StringBuffer buf = new StringBuffer();
+        while (rest.compareTo(divisor) >= 0) {
+            BigInteger[] qr = rest.divideAndRemainder(divisor);
+            String digits = Long.toString(qr[1].longValue(), radix);
+            for (int k = digits.length(); k < chunkDigits; k++) {
+                digits = "0" + digits;
+            }
+            buf.insert(0, digits);
+            rest = qr[0];
+        }
+        buf.insert(0, Long.toString(rest.longValue(), radix));
+        if (x.signum() < 0) {
+            buf.insert(0, '-');
+        }
+        return buf.toString();
+    }
+
+    /**
+     * isProbablePrime 先试除小素数（没有小因子并且不超过 20 位的数直接判为素数），再做 Baillie-PSW 测试。
+     * 在两段连续区间上与试除法逐个比较，并检查 Carmichael 数、以 2 为底（以及以前若干个素数为底）的
+     * 强伪素数、强 Lucas 伪素数和已知的大素数。
+     */
+    private static void primality() {
+        long[][] ranges = {{-2, 70000}, {(1 << 20) - 20000, (1 << 20) + 20000}};
+        for (int i = 0; i < ranges.length; i++) {
+            for (long n = ranges[i][0]; n < ranges[i][1]; n++) {
+                boolean expect = isPrimeByTrialDivision(Math.abs(n));
+                check(BigInteger.valueOf(n).isProbablePrime(50) == expect, "isProbablePrime " + n);
+            }
+        }
+
+        String[] composites = {
+            // Carmichael 数
+            "561", "1105", "1729", "2465", "2821", "6601", "8911", "41041", "825265", "321197185",
+            "5394826801", "232250619601", "9746347772161",
+            // 以 2 为底的强伪素数
+            "2047", "3277", "4033", "4681", "8321", "15841", "29341", "42799", "49141", "52633", "65281",
+            "74665", "80581", "85489", "88357", "90751", "1194649", "12327121",
+            // 以 2、3、5、7 为底的强伪素数；以不超过 37 的全部素数为底的强伪素数
+            "3215031751", "3825123056546413051", "318665857834031151167461", "3317044064679887385961981",
+            // 强 Lucas 伪素数
+            "5459", "5777", "10877", "16109", "18971", "22499", "24569", "25199", "40309", "58519",
+            // 2^67 - 1 = 193707721 * 761838257287
+            "147573952589676412927",
+        };
+        for (int i = 0; i < composites.length; i++) {
+            BigInteger c = new BigInteger(composites[i]);
+            check(!c.isProbablePrime(100) && !c.negate().isProbablePrime(100), "composite " + c);
+        }
+        BigInteger p = ONE.shiftLeft(127).subtract(ONE);
+        BigInteger q = ONE.shiftLeft(89).subtract(ONE);
+        check(!p.multiply(q).isProbablePrime(100), "(2^127 - 1)(2^89 - 1)");
+
+        int[] mersenneExponents = {31, 61, 89, 107, 127, 521, 607, 1279};
+        for (int i = 0; i < mersenneExponents.length; i++) {
+            BigInteger m = ONE.shiftLeft(mersenneExponents[i]).subtract(ONE);
+            check(m.isProbablePrime(100) && m.isProbablePrime(1000), "Mersenne prime 2^" + mersenneExponents[i] + " - 1");
+        }
+        check(BigInteger.valueOf(2).isProbablePrime(1) && BigInteger.valueOf(4).isProbablePrime(0),
+                "certainty <= 1 always returns true");
+    }
+
+    /**
+     * 不超过 17 位（筛法小素数的位数加一）的素数逐个随机测试，更长的用筛法在随机窗口中搜索。
+     * 在边界两侧、单线程和多线程下检查生成的数位长正确并且是素数。
+     */
+    private static void primeGeneration(Random rnd) {
+        int[] bitLengths = {2, 3, 8, 15, 16, 17, 18, 19, 24, 40, 63, 64, 65, 100, 255, 256, 257, 512};
+        int[] parallelisms = {1, 4};
+        for (int i = 0; i < bitLengths.length; i++) {
+            for (int j = 0; j < parallelisms.length; j++) {
+                for (int k = 0; k < 5; k++) {
+                    BigInteger p = new BigInteger(bitLengths[i], 50, rnd, parallelisms[j]);
+                    check(p.bitLength() == bitLengths[i], "prime bitLength " + bitLengths[i] + " " + p);
+                    check(p.isProbablePrime(50), "prime " + p);
+                    if (bitLengths[i] < 63) {
+                        check(isPrimeByTrialDivision(p.longValue()), "prime by trial division " + p);
+                    }
+                }
+            }
+        }
+
+        // 调用者持有 rnd 的锁时多线程搜索不能死锁：搜索线程不能对 rnd 加锁
+        final Random shared = new Random(2);
+        final BigInteger[] result = new BigInteger[1];
+        Thread t = new Thread() {
+            public void run() {
+                synchronized (shared) {
+                    result[0] = new BigInteger(1024, 50, shared, 4);
+                }
+            }
+        };
+        t.setDaemon(true);
+        t.start();
+        try {
+            t.join(60000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        check(result[0] != null && result[0].bitLength() == 1024, "prime search while holding the lock on rnd");
+    }
+
+    /**
+     * 用试除法判断 n 是否为素数。
+     */
+    private static boolean isPrimeByTrialDivision(long n) {
+        if (n < 2) {
+            return false;
+        }
+        for (long d = 2; d * d <= n; d++) {
+            if (n % d == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 检查 s^n <= x < (s+1)^n，平方根还检查余数 r == x - s^2。
+     * 不超过 62 位的平方根用 double 估计，更大的按精度加倍递归；n 次方根不超过 48 位时用对数估计初值，
+     * 否则递归。也覆盖完全幂和它两侧的数、很大的 n，以及负数和非法的 n。
+     */
+    private static void roots(Random rnd) {
+        for (long v = 0; v < 5000; v++) {
+            checkRoot(BigInteger.valueOf(v), 2);
+            checkRoot(BigInteger.valueOf(v), 3);
+        }
+        int[] bitLengths = {30, 52, 53, 54, 61, 62, 63, 64, 100, 127, 128, 200, 1000, 5000, 20000};
+        int[] degrees = {2, 3, 4, 5, 7, 16, 31, 64, 100, 1000};
+        for (int i = 0; i < bitLengths.length; i++) {
+            for (int j = 0; j < degrees.length; j++) {
+                int n = degrees[j];
+                BigInteger x = new BigInteger(bitLengths[i], rnd).setBit(bitLengths[i] - 1);
+                checkRoot(x, n);
+                // 完全幂 k^n 和它两侧的数
+                BigInteger k = new BigInteger(Math.max(bitLengths[i] / n, 1), rnd).add(ONE);
+                BigInteger kn = k.pow(n);
+                checkRoot(kn, n);
+                checkRoot(kn.subtract(ONE), n);
+                checkRoot(kn.add(ONE), n);
+                check(kn.root(n).equals(k) && kn.subtract(ONE).root(n).equals(k.subtract(ONE)), "perfect power " + k + "^" + n);
+                if ((n & 1) == 1) {
+                    check(kn.negate().root(n).equals(k.negate()) && x.negate().root(n).equals(x.root(n).negate()),
+                            "odd root of negative " + n);
+                }
+            }
+        }
+        // 2^62 附近的平方根在 double 路径和递归路径之间切换
+        for (int d = -3; d <= 3; d++) {
+            checkRoot(ONE.shiftLeft(62).add(BigInteger.valueOf(d)), 2);
+            checkRoot(BigInteger.valueOf(3037000499L).pow(2).add(BigInteger.valueOf(d)), 2);
+        }
+        BigInteger x = new BigInteger(300, rnd);
+        check(x.root(1).equals(x) && x.root(400).equals(ONE) && BigInteger.valueOf(0).root(5).signum() == 0,
+                "trivial roots");
+
+        BigInteger[] bad = {BigInteger.valueOf(-1), BigInteger.valueOf(-4), x.negate()};
+        for (int i = 0; i < bad.length; i++) {
+            try {
+                bad[i].sqrt();
+                check(false, "sqrt of negative " + bad[i]);
+            } catch (ArithmeticException e) {
+                // 预期
+            }
+            try {
+                bad[i].sqrtAndRemainder();
+                check(false, "sqrtAndRemainder of negative " + bad[i]);
+            } catch (ArithmeticException e) {
+                // 预期
+            }
+            try {
+                bad[i].root(4);
+                check(false, "even root of negative " + bad[i]);
+            } catch (ArithmeticException e) {
+                // 预期
+            }
+        }
+        int[] badDegrees = {0, -1, -2, Integer.MIN_VALUE};
+        for (int i = 0; i < badDegrees.length; i++) {
+            try {
+                x.root(badDegrees[i]);
+                check(false, "root " + badDegrees[i]);
+            } catch (ArithmeticException e) {
+                // 预期
+            }
+        }
+    }
+
+    /**
+     * 检查 x >= 0 的 n 次方根 s 满足 s^n <= x < (s+1)^n；n == 2 时还检查 sqrt 和余数。
+     */
+    private static void checkRoot(BigInteger x, int n) {
+        BigInteger s = x.root(n);
+        check(s.pow(n).compareTo(x) <= 0 && s.add(ONE).pow(n).compareTo(x) > 0, "root " + x + " " + n);
+        if (n == 2) {
+            BigInteger[] sr = x.sqrtAndRemainder();
+            check(sr[0].equals(s) && x.sqrt().equals(s), "sqrt " + x);
+            check(sr[1].equals(x.subtract(s.multiply(s))), "sqrt remainder " + x);
+        }
+    }
+
+    /**
+     * x ** 0 mod m 是 1 mod m：m == 1 时为 0，单个底数和多个底数的取幂结果一致。
+     */
+    private static void modPowZeroExponent() {
+        BigInteger x = BigInteger.valueOf(7);
+        BigInteger zero = BigInteger.valueOf(0);
+        for (int m = 1; m <= 4; m++) {
+            BigInteger mod = BigInteger.valueOf(m);
+            BigInteger expect = ONE.mod(mod);
+            check(x.modPow(zero, mod).equals(expect), "modPow x^0 mod " + m);
+            check(new Modulus(mod).modPow(x, zero).equals(expect), "Modulus.modPow x^0 mod " + m);
+            check(BigInteger.multiModPow(new BigInteger[]{x}, new BigInteger[]{zero}, mod).equals(expect),
+                    "multiModPow x^0 mod " + m);
+        }
+    }
+
+    /**
+     * 把 b 拆成 32 个 int 一块，每块与 a 的乘积都走“学校”乘法，再移位相加。
+     */
+    private static BigInteger schoolbook(BigInteger a, BigInteger b) {
+        return splitProduct(a, b, 32);
+    }
+
+    /**
+     * 返回恰好 ints 个 int 长的随机正数（最高位为 1）。
+     */
+    private static BigInteger randomInts(int ints, Random rnd) {
+        return new BigInteger(32 * ints, rnd).setBit(32 * ints - 1);
+    }
+
+    /**
+     * 长度头不可信：声明很长但内容很短的流应该抛出 EOFException，而不是先按声明的长度分配内存；
+     * 第 10 个字节携带超出 64 位的位时应该被拒绝，而不是被截断。
+     */
+    private static void streamLimits() throws IOException {
+        // h = (2^31 - 2) | 1，声明约 1G 个字节，后面只有 3 个字节
+        byte[] huge = {(byte) 0xfd, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f, 1, 2, 3};
+        try {
+            BigInteger.readCompactFrom(new ByteArrayInputStream(huge));
+            check(false, "readCompactFrom huge length");
+        } catch (EOFException e) {
+            // 预期
+        }
+        try {
+            BigInteger.readFrom(new ByteArrayInputStream(new byte[]{5, 6}), Integer.MAX_VALUE);
+            check(false, "readFrom huge length");
+        } catch (EOFException e) {
+            // 预期
+        }
+
+        byte[] varint = new byte[10];
+        for (int i = 0; i < 9; i++) {
+            varint[i] = (byte) 0x80;
+        }
+        varint[9] = 2;
+        try {
+            BigInteger.readCompactFrom(new ByteArrayInputStream(varint));
+            check(false, "readCompactFrom varint overflow");
+        } catch (StreamCorruptedException e) {
+            // 预期
+        }
+        // 第 10 个字节只有最低位时是合法的：h = 2^63，即 2^61 的编码
+        varint[9] = 1;
+        check(BigInteger.readCompactFrom(new ByteArrayInputStream(varint)).equals(BigInteger.valueOf(1L << 61)),
+                "readCompactFrom 2^61");
+    }
+
+    /**
+     * 移位按整 int 搬移再处理余下的位。在 32 的倍数及其两侧取移位量，左移与乘以 2^n 比较，
+     * 右移与向负无穷取整的除法比较；负数全部移出时结果为 -1。
+     */
+    private static void shifts(Random rnd) {
+        int[] counts = {0, 1, 5, 31, 32, 33, 63, 64, 65, 95, 96, 97, 200, 256, 1000};
+        for (int i = 0; i < 300; i++) {
+            BigInteger x = new BigInteger(1 + rnd.nextInt(600), rnd);
+            if (i % 4 == 3) {
+                // 低位全为 0 的数：负数右移不丢失 1
+                x = x.setBit(x.bitLength()).shiftLeft(rnd.nextInt(130));
+            }
+            if (i % 2 == 1) {
+                x = x.negate();
+            }
+            for (int j = 0; j <= counts.length; j++) {
+                int n = j < counts.length ? counts[j] : rnd.nextInt(700);
+                BigInteger pow = BigInteger.valueOf(2).pow(n);
+                BigInteger floor = x.divide(pow);
+                if (x.signum() < 0 && !floor.multiply(pow).equals(x)) {
+                    floor = floor.subtract(ONE);
+                }
+                check(x.shiftLeft(n).equals(x.multiply(pow)), "shiftLeft " + x + " " + n);
+                check(x.shiftRight(n).equals(floor), "shiftRight " + x + " " + n);
+                check(x.shiftLeft(-n).equals(floor), "shiftLeft " + x + " " + (-n));
+                check(x.shiftRight(-n).equals(x.multiply(pow)), "shiftRight " + x + " " + (-n));
+            }
+        }
+        check(BigInteger.valueOf(-5).shiftRight(1000).equals(BigInteger.valueOf(-1)), "-5 >> 1000");
+        check(BigInteger.valueOf(5).shiftRight(1000).signum() == 0, "5 >> 1000");
+        check(BigInteger.valueOf(0).shiftLeft(1000).signum() == 0, "0 << 1000");
+    }
+
+    /**
+     * 按位运算以无限长的补码表示负数。把操作数写成 N 位补码的二进制串，逐个字符运算后再读回，
+     * 与 and/or/xor/andNot/not 及 setBit/clearBit/flipBit/testBit 比较；
+     * 长度不同、符号不同以及低位全为 0 的负数都要覆盖到。
+     */
+    private static void bitwise(Random rnd) {
+        for (int i = 0; i < 400; i++) {
+            BigInteger x = new BigInteger(1 + rnd.nextInt(300), rnd);
+            BigInteger y = new BigInteger(1 + rnd.nextInt(300), rnd);
+            if (i % 5 == 4) {
+                x = x.shiftLeft(32 * rnd.nextInt(4));
+                y = y.shiftLeft(32 * rnd.nextInt(4));
+            }
+            if ((i & 1) != 0) {
+                x = x.negate();
+            }
+            if ((i & 2) != 0) {
+                y = y.negate();
+            }
+            int bits = Math.max(x.bitLength(), y.bitLength()) + 2;
+            String a = twosComplement(x, bits);
+            String b = twosComplement(y, bits);
+            StringBuffer and = new StringBuffer();
+            StringBuffer or = new StringBuffer();
+            StringBuffer xor = new StringBuffer();
+            StringBuffer andNot = new StringBuffer();
+            StringBuffer not = new StringBuffer();
+            for (int k = 0; k < bits; k++) {
+                boolean p = a.charAt(k) == '1';
+                boolean q = b.charAt(k) == '1';
+                and.append(p && q ? '1' : '0');
+                or.append(p || q ? '1' : '0');
+                xor.append(p != q ? '1' : '0');
+                andNot.append(p && !q ? '1' : '0');
+                not.append(p ? '0' : '1');
+            }
+            check(x.and(y).equals(fromTwosComplement(and.toString())), "and " + x + " " + y);
+            check(x.or(y).equals(fromTwosComplement(or.toString())), "or " + x + " " + y);
+            check(x.xor(y).equals(fromTwosComplement(xor.toString())), "xor " + x + " " + y);
+            check(x.andNot(y).equals(fromTwosComplement(andNot.toString())), "andNot " + x + " " + y);
+            check(x.not().equals(fromTwosComplement(not.toString())), "not " + x);
+
+            int n = rnd.nextInt(bits + 40);
+            boolean bit = n < bits ? a.charAt(bits - 1 - n) == '1' : x.signum() < 0;
+            check(x.testBit(n) == bit, "testBit " + x + " " + n);
+            BigInteger pow = BigInteger.valueOf(2).pow(n);
+            check(x.setBit(n).equals(bit ? x : x.add(pow)), "setBit " + x + " " + n);
+            check(x.clearBit(n).equals(bit ? x.subtract(pow) : x), "clearBit " + x + " " + n);
+            check(x.flipBit(n).equals(bit ? x.subtract(pow) : x.add(pow)), "flipBit " + x + " " + n);
+        }
+    }
+
+    /**
+     * bitLength、bitCount 和 getLowestSetBit 与二进制串上数出来的结果比较。负数 x 的 bitLength 和 bitCount
+     * 按 -x-1 计算，getLowestSetBit 与 |x| 相同；2 的幂及其两侧、跨 int 边界的值都要覆盖到。
+     */
+    private static void bitCounts(Random rnd) {
+        check(BigInteger.valueOf(0).bitLength() == 0 && BigInteger.valueOf(0).bitCount() == 0, "zero bits");
+        check(BigInteger.valueOf(0).getLowestSetBit() == -1, "zero getLowestSetBit");
+        check(BigInteger.valueOf(-1).bitLength() == 0 && BigInteger.valueOf(-1).bitCount() == 0, "-1 bits");
+        for (int k = 0; k < 300; k++) {
+            BigInteger pow = BigInteger.valueOf(2).pow(k);
+            BigInteger[] values = {pow, pow.add(ONE), pow.subtract(ONE), pow.shiftLeft(k).add(pow)};
+            for (int v = 0; v < values.length; v++) {
+                checkBitCounts(values[v]);
+                checkBitCounts(values[v].negate());
+            }
+        }
+        for (int i = 0; i < 500; i++) {
+            BigInteger x = new BigInteger(1 + rnd.nextInt(500), rnd).shiftLeft(rnd.nextInt(100));
+            checkBitCounts(x);
+            checkBitCounts(x.negate());
+        }
+    }
+
+    private static void checkBitCounts(BigInteger x) {
+        if (x.signum() == 0) {
+            return;
+        }
+        String magnitude = x.abs().toString(2);
+        String bits = x.signum() > 0 ? magnitude : x.negate().subtract(ONE).toString(2);
+        int length = bits.equals("0") ? 0 : bits.length();
+        int count = 0;
+        for (int i = 0; i < bits.length(); i++) {
+            if (bits.charAt(i) == '1') {
+                count++;
+            }
+        }
+        int lowest = magnitude.length() - 1 - magnitude.lastIndexOf('1');
+        check(x.bitLength() == length, "bitLength " + x);
+        check(x.bitCount() == count, "bitCount " + x);
+        check(x.getLowestSetBit() == lowest, "getLowestSetBit " + x);
+    }
+
+    /**
+     * gcd 在长度相近时用 Lehmer 算法，长度悬殊或很短时用二进制算法。用公因子已知的乘积检查结果确实是最大公因数：
+     * a/g 与 b/g 互素，并与逐步取余的辗转相除比较。
+     */
+    private static void gcd(Random rnd) {
+        BigInteger zero = BigInteger.valueOf(0);
+        check(zero.gcd(zero).signum() == 0, "gcd(0, 0)");
+        check(BigInteger.valueOf(12).gcd(BigInteger.valueOf(-18)).equals(BigInteger.valueOf(6)), "gcd(12, -18)");
+        check(BigInteger.valueOf(-17).gcd(BigInteger.valueOf(5)).equals(ONE), "gcd(-17, 5)");
+        check(BigInteger.valueOf(2).pow(300).gcd(BigInteger.valueOf(6).pow(100))
+                .equals(BigInteger.valueOf(2).pow(100)), "gcd(2^300, 6^100)");
+        // 相邻的斐波那契数互素，辗转相除的步数最多
+        BigInteger f0 = ONE;
+        BigInteger f1 = ONE;
+        for (int i = 0; i < 2000; i++) {
+            BigInteger t = f0.add(f1);
+            f0 = f1;
+            f1 = t;
+        }
+        check(f1.gcd(f0).equals(ONE), "gcd fibonacci");
+        check(f1.multiply(f1).gcd(f1.multiply(f0)).equals(f1), "gcd fibonacci * f");
+
+        int[] lengths = {1, 2, 5, 30, 100, 300};
+        for (int i = 0; i < 300; i++) {
+            BigInteger common = new BigInteger(1 + rnd.nextInt(200), rnd).add(ONE);
+            if (i % 3 == 0) {
+                common = common.shiftLeft(rnd.nextInt(70));
+            }
+            BigInteger a = randomInts(lengths[rnd.nextInt(lengths.length)], rnd).multiply(common);
+            BigInteger b = randomInts(lengths[rnd.nextInt(lengths.length)], rnd).multiply(common);
+            if ((i & 1) != 0) {
+                a = a.negate();
+            }
+            if ((i & 2) != 0) {
+                b = b.negate();
+            }
+            BigInteger g = a.gcd(b);
+            check(g.signum() > 0 && g.remainder(common).signum() == 0, "gcd common factor " + a + " " + b);
+            check(a.divide(g).gcd(b.divide(g)).equals(ONE), "gcd cofactors " + a + " " + b);
+            check(g.equals(euclid(a, b)), "gcd euclid " + a + " " + b);
+            check(zero.gcd(a).equals(a.abs()) && a.gcd(zero).equals(a.abs()), "gcd(0, x) " + a);
+            check(a.gcd(a).equals(a.abs()), "gcd(x, x) " + a);
+        }
+    }
+
+    /**
+     * 参照实现：逐步取余的辗转相除。
+     */
+    private static BigInteger euclid(BigInteger a, BigInteger b) {
+        a = a.abs();
+        b = b.abs();
+        while (b.signum() != 0) {
+            BigInteger r = a.remainder(b);
+            a = b;
+            b = r;
+        }
+        return a;
+    }
+
+    /**
+     * modInverse 在模数为 2 的幂时走牛顿迭代，其他情况走扩展 Lehmer 算法。检查 a * a^-1 mod m == 1
+     * 且结果落在 [0, m) 内，覆盖奇数、偶数、2 的幂和负的 a；不可逆和模数不为正时抛出 ArithmeticException。
+     */
+    private static void modInverse(Random rnd) {
+        for (int i = 0; i < 400; i++) {
+            BigInteger m;
+            switch (i % 4) {
+                case 0: m = BigInteger.valueOf(2).pow(1 + rnd.nextInt(300)); break;
+                case 1: m = new BigInteger(1 + rnd.nextInt(600), rnd).setBit(0); break;
+                case 2: m = new BigInteger(1 + rnd.nextInt(600), rnd).add(ONE).shiftLeft(1 + rnd.nextInt(40)); break;
+                default: m = randomInts(1 + rnd.nextInt(40), rnd); break;
+            }
+            BigInteger a = new BigInteger(m.bitLength() + 20, rnd);
+            if (i % 8 >= 4) {
+                a = a.negate();
+            }
+            if (!euclid(a, m).equals(ONE)) {
+                try {
+                    a.modInverse(m);
+                    check(m.equals(ONE), "modInverse not invertible " + a + " " + m);
+                } catch (ArithmeticException e) {
+                    // 预期
+                }
+                continue;
+            }
+            BigInteger inv = a.modInverse(m);
+            check(inv.signum() >= 0 && inv.compareTo(m) < 0, "modInverse range " + a + " " + m);
+            check(a.multiply(inv).mod(m).equals(ONE.mod(m)), "modInverse " + a + " " + m);
+        }
+
+        // 2^k 的各种长度，跨 int 边界
+        BigInteger three = BigInteger.valueOf(3);
+        for (int k = 1; k <= 200; k++) {
+            BigInteger m = BigInteger.valueOf(2).pow(k);
+            check(three.multiply(three.modInverse(m)).mod(m).equals(ONE), "modInverse 3 mod 2^" + k);
+            check(three.negate().multiply(three.negate().modInverse(m)).mod(m).equals(ONE), "modInverse -3 mod 2^" + k);
+        }
+        check(BigInteger.valueOf(7).modInverse(ONE).signum() == 0, "modInverse mod 1");
+        BigInteger[][] bad = {
+            {BigInteger.valueOf(6), BigInteger.valueOf(1024)},
+            {BigInteger.valueOf(0), BigInteger.valueOf(1024)},
+            {BigInteger.valueOf(0), BigInteger.valueOf(15)},
+            {BigInteger.valueOf(-9), BigInteger.valueOf(15)},
+            {BigInteger.valueOf(5), BigInteger.valueOf(0)},
+            {BigInteger.valueOf(5), BigInteger.valueOf(-7)},
+        };
+        for (int i = 0; i < bad.length; i++) {
+            try {
+                bad[i][0].modInverse(bad[i][1]);
+                check(false, "modInverse " + bad[i][0] + " " + bad[i][1]);
+            } catch (ArithmeticException e) {
+                // 预期
+            }
+        }
+    }
+
+    /**
+     * doubleValue 和 floatValue 必须舍入到最近、平局取偶，超出范围时为无穷大。恰在两个可表示数中间的值、
+     * 中间值加减一（粘滞位）以及最大有限值与 2^1024、2^128 的中点都要覆盖到；其余的与十进制串解析的结果比较。
+     */
+    private static void floatingPoint(Random rnd) {
+        BigInteger two = BigInteger.valueOf(2);
+        double p53 = Math.pow(2, 53);
+        // 2^53 + 1 在 2^53 与 2^53 + 2 正中，取偶数 2^53；2^53 + 3 取 2^53 + 4
+        checkDouble(two.pow(53).add(ONE), p53);
+        checkDouble(two.pow(53).add(BigInteger.valueOf(3)), p53 + 4);
+        checkDouble(two.pow(53).add(ONE).shiftLeft(100).add(ONE), (p53 + 2) * Math.pow(2, 100));
+        checkDouble(two.pow(53).add(ONE).shiftLeft(100).subtract(ONE), p53 * Math.pow(2, 100));
+        checkDouble(two.pow(63).subtract(ONE), Math.pow(2, 63));
+        checkDouble(two.pow(64).subtract(ONE), Math.pow(2, 64));
+        // Double.MAX_VALUE = (2^53 - 1) * 2^971，它与 2^1024 的中点是 2^1024 - 2^970
+        BigInteger half = two.pow(1024).subtract(two.pow(970));
+        checkDouble(half.subtract(ONE), Double.MAX_VALUE);
+        checkDouble(half, Double.POSITIVE_INFINITY);
+        checkDouble(two.pow(1024), Double.POSITIVE_INFINITY);
+        checkDouble(two.pow(5000), Double.POSITIVE_INFINITY);
+
+        float p24 = (float) Math.pow(2, 24);
+        checkFloat(two.pow(24).add(ONE), p24);
+        checkFloat(two.pow(24).add(BigInteger.valueOf(3)), p24 + 4);
+        checkFloat(two.pow(24).add(ONE).shiftLeft(70).add(ONE), (p24 + 2) * (float) Math.pow(2, 70));
+        checkFloat(two.pow(24).add(ONE).shiftLeft(70).subtract(ONE), p24 * (float) Math.pow(2, 70));
+        // Float.MAX_VALUE = (2^24 - 1) * 2^104，它与 2^128 的中点是 2^128 - 2^103
+        half = two.pow(128).subtract(two.pow(103));
+        checkFloat(half.subtract(ONE), Float.MAX_VALUE);
+        checkFloat(half, Float.POSITIVE_INFINITY);
+        checkFloat(two.pow(128), Float.POSITIVE_INFINITY);
+        checkFloat(two.pow(1100), Float.POSITIVE_INFINITY);
+
+        for (int i = 0; i < 2000; i++) {
+            BigInteger x;
+            switch (i % 3) {
+                case 0:
+                    x = new BigInteger(1 + rnd.nextInt(1100), rnd);
+                    break;
+                case 1:
+                    // 中间值：54 位，最低位为一，再左移
+                    x = new BigInteger(53, rnd).setBit(53).shiftLeft(1).add(ONE).shiftLeft(rnd.nextInt(960));
+                    break;
+                default:
+                    x = new BigInteger(24, rnd).setBit(24).shiftLeft(1).add(ONE).shiftLeft(rnd.nextInt(100))
+                            .add(BigInteger.valueOf(rnd.nextInt(3) - 1));
+                    break;
+            }
+            checkDouble(x, Double.valueOf(x.toString()).doubleValue());
+            checkFloat(x, Float.valueOf(x.toString()).floatValue());
+        }
+    }
+
+    private static void checkDouble(BigInteger x, double expect) {
+        check(x.doubleValue() == expect, "doubleValue " + x);
+        check(x.negate().doubleValue() == -expect, "doubleValue " + x.negate());
+    }
+
+    private static void checkFloat(BigInteger x, float expect) {
+        check(x.floatValue() == expect, "floatValue " + x);
+        check(x.negate().floatValue() == -expect, "floatValue " + x.negate());
+    }
+
+    /**
+     * x 的低 bits 位补码，高位在前；bits 须大于 x 的 bitLength。
+     */
+    private static String twosComplement(BigInteger x, int bits) {
+        String s = x.mod(BigInteger.valueOf(2).pow(bits)).toString(2);
+        StringBuffer sb = new StringBuffer();
+        for (int i = s.length(); i < bits; i++) {
+            sb.append('0');
+        }
+        return sb.append(s).toString();
+    }
+
+    /**
+     * 把补码二进制串读回，最高位为符号位。
+     */
+    private static BigInteger fromTwosComplement(String s) {
+        BigInteger x = new BigInteger(s, 2);
+        return s.charAt(0) == '1' ? x.subtract(BigInteger.valueOf(2).pow(s.length())) : x;
+    }
+
+    private static void check(boolean ok, String message) {
+        if (!ok) {
+            throw new AssertionError(message);
+        }
+    }
+}